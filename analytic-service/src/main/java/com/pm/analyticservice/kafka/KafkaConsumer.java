@@ -4,17 +4,20 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.common.internals.Topic;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 import patient.events.PatientEvent;
 
+// one record at a time, with analytics.consumer.batch.enabled=false instead of PatientEventBatchConsumer
 @Slf4j
 @Service
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "analytics.consumer.batch.enabled", havingValue = "false")
 public class KafkaConsumer {
 
 
-    @KafkaListener(topics = "patient", groupId = "analytic-service")
+    @KafkaListener(topics = "patient", groupId = "analytic-service", batch = "false")
     public void consumeEvent(byte[] event){
         try {
             PatientEvent patientEvent = PatientEvent.parseFrom(event);
@@ -0,0 +1,152 @@
+package com.pm.analyticservice.kafka;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+import patient.events.PatientEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes the patient topic a poll at a time. The records are split into lanes by key (patient-service keys them by
+ * patient id) and the lanes run in parallel, each handling its records in offset order, so the events of a patient
+ * are still processed in order. The listener returns, and the container commits the offsets of the batch, only once
+ * every lane is done; if one fails the whole batch is redelivered, at least once like the producer side.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "analytics.consumer.batch.enabled", havingValue = "true", matchIfMissing = true)
+public class PatientEventBatchConsumer {
+
+    private final int laneCount;
+    private final ExecutorService lanes;
+
+    private final Counter processed;
+    private final Counter invalid;
+    private final Timer batchTimer;
+    private final DistributionSummary batchSize;
+    private final Timer eventDelay;
+
+    public PatientEventBatchConsumer(@Value("${analytics.consumer.lanes:0}") int lanes,
+                                     MeterRegistry meterRegistry) {
+        this.laneCount = lanes > 0 ? lanes : Runtime.getRuntime().availableProcessors();
+        this.lanes = Executors.newFixedThreadPool(laneCount, Thread.ofPlatform().name("analytics-lane-", 0).daemon().factory());
+
+        this.processed = Counter.builder("analytics.events.consumed")
+                .description("Patient events taken off the topic")
+                .tag("result", "processed")
+                .register(meterRegistry);
+        this.invalid = Counter.builder("analytics.events.consumed")
+                .description("Patient events taken off the topic")
+                .tag("result", "invalid")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("analytics.batch.duration")
+                .description("Time to process one poll of patient events, all lanes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("analytics.batch.size")
+                .description("Patient events per poll")
+                .register(meterRegistry);
+        // lag in time; lag in records per partition is the client's kafka.consumer.fetch.manager.records.lag
+        this.eventDelay = Timer.builder("analytics.events.delay")
+                .description("Time from an event being produced until it was processed")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofHours(1))
+                .register(meterRegistry);
+    }
+
+    @KafkaListener(topics = "patient", groupId = "analytic-service", batch = "true")
+    public void consumeBatch(List<ConsumerRecord<String, byte[]>> records){
+        long start = System.nanoTime();
+
+        List<List<ConsumerRecord<String, byte[]>>> byLane = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            byLane.add(new ArrayList<>());
+        }
+        for (ConsumerRecord<String, byte[]> record : records) {
+            // a record without a key goes to the same lane as every other one, still in order
+            byLane.get(Math.floorMod(Objects.hashCode(record.key()), laneCount)).add(record);
+        }
+
+        List<Future<?>> running = new ArrayList<>(laneCount);
+        for (List<ConsumerRecord<String, byte[]>> lane : byLane) {
+            if (!lane.isEmpty()) {
+                running.add(lanes.submit(() -> lane.forEach(this::process)));
+            }
+        }
+        awaitAll(running);
+
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSize.record(records.size());
+        log.debug("Processed {} patient events in {} lanes", records.size(), running.size());
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        lanes.shutdown();
+    }
+
+    // waits for every lane even after one failed, so a redelivered batch never runs next to the rest of this one
+    private void awaitAll(List<Future<?>> running){
+        RuntimeException failure = null;
+        for (Future<?> lane : running) {
+            try {
+                lane.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = new IllegalStateException("Patient event batch failed, it will be redelivered", e.getCause());
+                }
+            } catch (InterruptedException e) {
+                running.forEach(other -> other.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while processing patient events", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void process(ConsumerRecord<String, byte[]> record){
+        PatientEvent patientEvent;
+        try {
+            patientEvent = PatientEvent.parseFrom(record.value());
+        } catch (InvalidProtocolBufferException e) {
+            // retrying won't make it parse
+            log.error("Error deserializing event at {}-{}@{}: {} ", record.topic(), record.partition(), record.offset(), e.getMessage());
+            invalid.increment();
+            return;
+        }
+
+        handle(record, patientEvent);
+
+        processed.increment();
+        eventDelay.record(Math.max(0, System.currentTimeMillis() - record.timestamp()), TimeUnit.MILLISECONDS);
+    }
+
+    // called on a lane thread, in offset order for each patient
+    void handle(ConsumerRecord<String, byte[]> record, PatientEvent patientEvent){
+        //... perform any business related to analytics here
+        log.debug("Recieved patient Event: [PatientId={},PatientName={}, PatientEmail={}] ",
+                patientEvent.getPatientId(),
+                patientEvent.getName(),
+                patientEvent.getEmail());
+    }
+}
@@ -0,0 +1,136 @@
+package com.pm.analyticservice.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import patient.events.PatientEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Events over two partitions and more lanes than the test machine has cores, plus one that doesn't parse: every
+ * event is processed once, the broken one is skipped, and the group's offsets end up past all of them. The ordering
+ * test drives a consumer of its own with polls whose patients are interleaved.
+ */
+@SpringBootTest(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.consumer.auto-offset-reset=earliest",
+        "analytics.consumer.lanes=4"
+})
+@EmbeddedKafka(partitions = 2, topics = "patient")
+class PatientEventBatchConsumerTest {
+
+    private static final int EVENTS = 2_000;
+    private static final int PATIENTS = 50;
+
+    @Autowired
+    private EmbeddedKafkaBroker broker;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void processesEveryEventAndCommitsTheBatches() throws Exception {
+        DefaultKafkaProducerFactory<String, byte[]> producerFactory = new DefaultKafkaProducerFactory<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class));
+        try {
+            KafkaTemplate<String, byte[]> kafkaTemplate = new KafkaTemplate<>(producerFactory);
+            for (int i = 0; i < EVENTS; i++) {
+                String patientId = "patient-" + (i % PATIENTS);
+                kafkaTemplate.send("patient", patientId, PatientEvent.newBuilder()
+                        .setPatientId(patientId)
+                        .setName("Patient " + i)
+                        .setEmail("patient." + i + "@example.com")
+                        .setEventType("PATIENT_UPDATED")
+                        .build()
+                        .toByteArray());
+            }
+            kafkaTemplate.send(new ProducerRecord<>("patient", UUID.randomUUID().toString(), new byte[]{(byte) 0xff}));
+            kafkaTemplate.flush();
+        } finally {
+            producerFactory.destroy();
+        }
+
+        try (AdminClient admin = AdminClient.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()))) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            long committed = 0;
+            while (committed < EVENTS + 1 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(100);
+                Map<TopicPartition, OffsetAndMetadata> offsets = admin.listConsumerGroupOffsets("analytic-service")
+                        .partitionsToOffsetAndMetadata().get();
+                committed = offsets.values().stream().mapToLong(OffsetAndMetadata::offset).sum();
+            }
+            assertEquals(EVENTS + 1, committed);
+        }
+
+        assertEquals(EVENTS, meterRegistry.get("analytics.events.consumed").tag("result", "processed").counter().count());
+        assertEquals(1, meterRegistry.get("analytics.events.consumed").tag("result", "invalid").counter().count());
+        assertEquals(EVENTS + 1, (long) meterRegistry.get("analytics.batch.size").summary().totalAmount());
+    }
+
+    @Test
+    void processesTheEventsOfEachPatientInOffsetOrder() {
+        Map<String, List<Long>> handled = new ConcurrentHashMap<>();
+        Set<String> laneThreads = ConcurrentHashMap.newKeySet();
+        PatientEventBatchConsumer consumer = new PatientEventBatchConsumer(4, new SimpleMeterRegistry()) {
+            @Override
+            void handle(ConsumerRecord<String, byte[]> record, PatientEvent patientEvent) {
+                laneThreads.add(Thread.currentThread().getName());
+                // uneven work so the lanes get out of step with each other
+                if (record.offset() % 7 == 0) {
+                    Thread.yield();
+                }
+                handled.computeIfAbsent(record.key(), key -> Collections.synchronizedList(new ArrayList<>())).add(record.offset());
+            }
+        };
+
+        try {
+            long offset = 0;
+            for (int poll = 0; poll < 20; poll++) {
+                List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+                for (int i = 0; i < 200; i++, offset++) {
+                    String patientId = "patient-" + (offset * 7 % PATIENTS);
+                    byte[] value = PatientEvent.newBuilder().setPatientId(patientId).build().toByteArray();
+                    records.add(new ConsumerRecord<>("patient", 0, offset, patientId, value));
+                }
+                consumer.consumeBatch(records);
+            }
+        } finally {
+            consumer.shutdown();
+        }
+
+        assertEquals(PATIENTS, handled.size());
+        handled.forEach((patientId, offsets) -> {
+            assertEquals(offsets.stream().sorted().toList(), offsets, patientId);
+            assertEquals(4_000 / PATIENTS, offsets.size(), patientId);
+        });
+        assertTrue(laneThreads.size() > 1, "lanes used: " + laneThreads);
+    }
+}
@@ -0,0 +1,160 @@
+package com.pm.apigateway.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.pm.apigateway.filter.JwtValidationGatewayFilterFactory;
+import com.pm.apigateway.filter.JwtValidationGatewayFilterFactory.VerificationMode;
+import com.pm.apigateway.jwt.RemoteTokenValidator;
+import com.pm.apigateway.jwt.RevokedTokenList;
+import com.pm.apigateway.metrics.RouteMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The gateway's own cost per authenticated request. In REMOTE mode auth-service is replaced by an ExchangeFunction
+ * that answers 200 immediately and the same token is sent every time, so after the first call this measures a
+ * validation cache hit. In LOCAL mode the key set is in memory, as it is once the decoder has fetched it, and the
+ * revocation list holds {@code REVOKED_TOKENS} other tokens. {@code routeMetrics} is what the metrics filters add to
+ * a request, recorded into a Prometheus registry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtValidationFilterBenchmark {
+
+    private static final int REVOKED_TOKENS = 10_000;
+
+    @Param({"LOCAL", "REMOTE"})
+    private VerificationMode verificationMode;
+
+    private GatewayFilter filter;
+    private GatewayFilterChain chain;
+    private String authorization;
+    private RevokedTokenList revokedTokenList;
+    private String jti;
+    private RouteMetrics routeMetrics;
+    private MockServerWebExchange routedExchange;
+
+    @Setup
+    public void setUp() throws JOSEException {
+        RSAKey signingKey = new RSAKeyGenerator(2048).keyID("benchmark").generate();
+        jti = UUID.randomUUID().toString();
+        SignedJWT token = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(),
+                new JWTClaimsSet.Builder()
+                        .jwtID(jti)
+                        .subject("testuser@test.com")
+                        .claim("role", "ADMIN")
+                        .issueTime(new Date())
+                        .expirationTime(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(10)))
+                        .build());
+        token.sign(new RSASSASigner(signingKey));
+        authorization = "Bearer " + token.serialize();
+
+        NimbusReactiveJwtDecoder decoder = NimbusReactiveJwtDecoder
+                .withJwkSource(jwt -> Flux.just(signingKey.toPublicJWK()))
+                .jwsAlgorithm(SignatureAlgorithm.RS256)
+                .build();
+        String expiresAt = Instant.now().plus(Duration.ofHours(10)).toString();
+        String revocations = IntStream.range(0, REVOKED_TOKENS)
+                .mapToObj(i -> "{\"jti\":\"" + UUID.randomUUID() + "\",\"expiresAt\":\"" + expiresAt + "\"}")
+                .collect(Collectors.joining(",", "{\"revocations\":[", "],\"asOf\":\"" + Instant.now() + "\"}"));
+        WebClient.Builder stubbedAuthService = WebClient.builder()
+                .exchangeFunction(request -> Mono.just(request.url().getPath().equals("/revocations")
+                        ? ClientResponse.create(HttpStatus.OK, ExchangeStrategies.builder()
+                                        .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                                        .build())
+                                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .body(revocations)
+                                .build()
+                        : ClientResponse.create(HttpStatus.OK).build()));
+
+        RemoteTokenValidator remoteTokenValidator = new RemoteTokenValidator(stubbedAuthService, "http://auth-service:4005",
+                10_000, Duration.ofMinutes(5), Duration.ofSeconds(10), new SimpleMeterRegistry());
+
+        revokedTokenList = new RevokedTokenList(stubbedAuthService, "http://auth-service:4005",
+                100_000, 0.01, new SimpleMeterRegistry());
+        revokedTokenList.poll().block();
+
+        routeMetrics = new RouteMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+        routedExchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/patients"));
+        routedExchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, Route.async()
+                .id("patient-service-route")
+                .uri("http://patient-service:4000")
+                .predicate(exchange -> true)
+                .build());
+
+        filter = new JwtValidationGatewayFilterFactory(remoteTokenValidator, decoder, revokedTokenList, routeMetrics, verificationMode)
+                .apply(new Object());
+        chain = exchange -> Mono.empty();
+    }
+
+    @Benchmark
+    public MockServerWebExchange validToken(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/patients")
+                .header(HttpHeaders.AUTHORIZATION, authorization));
+        filter.filter(exchange, chain).block();
+        return exchange;
+    }
+
+    @Benchmark
+    public boolean revocationCheck(){
+        return revokedTokenList.isRevoked(jti);
+    }
+
+    @Benchmark
+    public void routeMetrics(){
+        RouteMetrics.Meters meters = routeMetrics.of(routedExchange);
+        meters.requestStarted();
+        meters.jwtValidated(40_000);
+        meters.upstreamStarted();
+        meters.upstreamFinished(3_000_000);
+        meters.requestFinished(200, 3_500_000);
+    }
+
+    @Benchmark
+    public MockServerWebExchange missingToken(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/patients"));
+        filter.filter(exchange, chain).block();
+        return exchange;
+    }
+}
@@ -0,0 +1,24 @@
+package com.pm.apigateway.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.WebClient;
+
+@Configuration
+public class JwtDecoderConfig {
+
+    // Verifies signature, exp and nbf locally against auth-service's published keys. The key set is cached and
+    // fetched again when a token names a key id it doesn't contain, which is how a key rotation shows up.
+    @Bean
+    public ReactiveJwtDecoder jwtDecoder(@Value("${auth.service.url}") String authServiceUrl,
+                                         WebClient.Builder webClientBuilder){
+        return NimbusReactiveJwtDecoder.withJwkSetUri(authServiceUrl + "/.well-known/jwks.json")
+                .jwsAlgorithm(SignatureAlgorithm.RS256)
+                .webClient(webClientBuilder.build())
+                .build();
+    }
+}
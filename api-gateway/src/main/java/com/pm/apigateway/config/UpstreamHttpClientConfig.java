@@ -0,0 +1,69 @@
+package com.pm.apigateway.config;
+
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientFactory;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.List;
+
+/**
+ * Connection pools to the services, set up from {@link UpstreamProperties}. The routes and the WebClients calling
+ * auth-service (/validate, /revocations, the key set) each get a provider, both publishing
+ * reactor.netty.connection.provider.* metrics per pool: total, active, idle and pending connections and the time
+ * spent waiting for one.
+ */
+@Configuration
+@EnableConfigurationProperties(UpstreamProperties.class)
+public class UpstreamHttpClientConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider routeConnectionProvider(UpstreamProperties upstreamProperties){
+        return upstreamProperties.connectionProvider("routes");
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider webClientConnectionProvider(UpstreamProperties upstreamProperties){
+        return upstreamProperties.connectionProvider("webclient");
+    }
+
+    // replaces the gateway's own factory only to hand it our pools, the spring.cloud.gateway.httpclient.*
+    // settings other than pool still apply
+    @Bean
+    public HttpClientFactory gatewayHttpClientFactory(HttpClientProperties properties, ServerProperties serverProperties,
+                                                      List<HttpClientCustomizer> customizers,
+                                                      HttpClientSslConfigurer sslConfigurer,
+                                                      ConnectionProvider routeConnectionProvider){
+        return new HttpClientFactory(properties, serverProperties, sslConfigurer, customizers) {
+            @Override
+            protected ConnectionProvider buildConnectionProvider(HttpClientProperties properties){
+                return routeConnectionProvider;
+            }
+        };
+    }
+
+    @Bean
+    public HttpClientCustomizer upstreamProtocolCustomizer(UpstreamProperties upstreamProperties){
+        return httpClient -> protocol(httpClient, upstreamProperties);
+    }
+
+    // picked up by the auto-configured WebClient.Builder
+    @Bean
+    public ClientHttpConnector webClientHttpConnector(UpstreamProperties upstreamProperties,
+                                                      ConnectionProvider webClientConnectionProvider){
+        return new ReactorClientHttpConnector(protocol(HttpClient.create(webClientConnectionProvider), upstreamProperties));
+    }
+
+    private static HttpClient protocol(HttpClient httpClient, UpstreamProperties upstreamProperties){
+        return upstreamProperties.isH2c() ? httpClient.protocol(HttpProtocol.H2C) : httpClient;
+    }
+}
@@ -0,0 +1,95 @@
+package com.pm.apigateway.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Connections from the gateway to the services, under gateway.upstream. {@code pool} applies to every host, each
+ * entry of {@code pools} gives one upstream (by the host and port of its uri) a pool of its own with the same
+ * settings unless overridden, so a slow patient-service can't take the connections auth-service calls need.
+ */
+@ConfigurationProperties("gateway.upstream")
+@Getter
+@Setter
+public class UpstreamProperties {
+
+    /** HTTP/2 over plain TCP (prior knowledge) to the services instead of HTTP/1.1 */
+    private boolean h2c = false;
+
+    private Pool pool = Pool.defaults();
+
+    private Map<String, Pool> pools = new LinkedHashMap<>();
+
+    ConnectionProvider connectionProvider(String name){
+        ConnectionProvider.Builder builder = ConnectionProvider.builder(name);
+        configure(builder, pool);
+
+        pools.forEach((upstream, overrides) -> {
+            URI uri = overrides.getUri();
+            if (uri == null || uri.getHost() == null) {
+                throw new IllegalStateException("gateway.upstream.pools." + upstream + ".uri must be an absolute uri");
+            }
+            // pools are looked up by the unresolved address the client builds from the request uri
+            int port = uri.getPort() != -1 ? uri.getPort() : "https".equals(uri.getScheme()) ? 443 : 80;
+            builder.forRemoteHost(InetSocketAddress.createUnresolved(uri.getHost(), port), spec -> configure(spec, overrides));
+        });
+        return builder.build();
+    }
+
+    private void configure(ConnectionProvider.ConnectionPoolSpec<?> spec, Pool overrides){
+        spec.maxConnections(valueOr(overrides.getMaxConnections(), pool.getMaxConnections()))
+                .pendingAcquireMaxCount(valueOr(overrides.getPendingAcquireMaxCount(), pool.getPendingAcquireMaxCount()))
+                .pendingAcquireTimeout(valueOr(overrides.getPendingAcquireTimeout(), pool.getPendingAcquireTimeout()))
+                .maxIdleTime(valueOr(overrides.getMaxIdleTime(), pool.getMaxIdleTime()))
+                .maxLifeTime(valueOr(overrides.getMaxLifeTime(), pool.getMaxLifeTime()))
+                .evictInBackground(valueOr(overrides.getEvictionInterval(), pool.getEvictionInterval()))
+                .metrics(true);
+    }
+
+    private static <T> T valueOr(T value, T fallback){
+        return value != null ? value : fallback;
+    }
+
+    /**
+     * Settings left out of an entry in {@code pools} are taken from {@code pool}.
+     */
+    @Getter
+    @Setter
+    public static class Pool {
+
+        private URI uri;
+
+        private Integer maxConnections;
+
+        /** requests allowed to wait for a connection once all are in use, beyond that they fail straight away */
+        private Integer pendingAcquireMaxCount;
+
+        private Duration pendingAcquireTimeout;
+
+        /** keep it below the services' keep-alive timeout, so the gateway closes idle connections before they do */
+        private Duration maxIdleTime;
+
+        private Duration maxLifeTime;
+
+        private Duration evictionInterval;
+
+        static Pool defaults(){
+            Pool pool = new Pool();
+            pool.setMaxConnections(500);
+            pool.setPendingAcquireMaxCount(1000);
+            pool.setPendingAcquireTimeout(Duration.ofSeconds(5));
+            pool.setMaxIdleTime(Duration.ofSeconds(15));
+            pool.setMaxLifeTime(Duration.ofMinutes(10));
+            pool.setEvictionInterval(Duration.ofSeconds(10));
+            return pool;
+        }
+    }
+}
@@ -1,24 +1,53 @@
 package com.pm.apigateway.filter;
 
 
+import com.pm.apigateway.jwt.JwtClaims;
+import com.pm.apigateway.jwt.RemoteTokenValidator;
+import com.pm.apigateway.jwt.RevokedTokenList;
+import com.pm.apigateway.metrics.RouteMetrics;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
 
 @Component
+@Slf4j
 public class JwtValidationGatewayFilterFactory extends AbstractGatewayFilterFactory<Object> {
 
-    private final WebClient webClient;
+    public enum VerificationMode {
+        // check the signature here against auth-service's JWKS and the jti against the mirrored revocation list,
+        // auth-service is only asked for keys and revocations in the background
+        LOCAL,
+        // ask auth-service's /validate, answers cached per token
+        REMOTE
+    }
+
+    private final RemoteTokenValidator remoteTokenValidator;
+    private final ReactiveJwtDecoder jwtDecoder;
+    private final RevokedTokenList revokedTokenList;
+    private final RouteMetrics routeMetrics;
+    private final VerificationMode verificationMode;
 
     public JwtValidationGatewayFilterFactory(
-            WebClient.Builder webClientBuilder,
-            @Value("${auth.service.url}") String authServiceUrl ) {
+            RemoteTokenValidator remoteTokenValidator,
+            ReactiveJwtDecoder jwtDecoder,
+            RevokedTokenList revokedTokenList,
+            RouteMetrics routeMetrics,
+            @Value("${auth.jwt.verification:local}") VerificationMode verificationMode) {
 
-        this.webClient = webClientBuilder.baseUrl(authServiceUrl).build();
+        this.remoteTokenValidator = remoteTokenValidator;
+        this.jwtDecoder = jwtDecoder;
+        this.revokedTokenList = revokedTokenList;
+        this.routeMetrics = routeMetrics;
+        this.verificationMode = verificationMode;
     }
 
     @Override
@@ -27,16 +56,46 @@ public class JwtValidationGatewayFilterFactory extends AbstractGatewayFilterFact
             String token = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
 
             if(token == null || !token.startsWith("Bearer ")){
-                exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
-                return exchange.getResponse().setComplete();
+                return reject(exchange, HttpStatus.UNAUTHORIZED);
             }
 
-            return webClient.get()
-                    .uri("/validate")
-                    .header(HttpHeaders.AUTHORIZATION, token)
-                    .retrieve()
-                    .toBodilessEntity()
-                    .then(chain.filter(exchange));
+            RouteMetrics.Meters meters = routeMetrics.of(exchange);
+            long start = System.nanoTime();
+
+            if (verificationMode == VerificationMode.LOCAL) {
+                return jwtDecoder.decode(token.substring(7))
+                        .map(jwt -> {
+                            if (revokedTokenList.isRevoked(jwt.getId())) {
+                                return HttpStatus.UNAUTHORIZED;
+                            }
+                            exchange.getAttributes().put(JwtClaims.ATTRIBUTE, jwt.getClaims());
+                            return HttpStatus.OK;
+                        })
+                        .onErrorResume(BadJwtException.class, e -> Mono.just(HttpStatus.UNAUTHORIZED))
+                        .onErrorResume(JwtException.class, e -> {
+                            // the token could not be checked at all, e.g. auth-service is down and the key is not cached yet
+                            log.warn("JWT verification unavailable: {}", e.getMessage());
+                            return Mono.just(HttpStatus.SERVICE_UNAVAILABLE);
+                        })
+                        .doOnNext(status -> meters.jwtValidated(System.nanoTime() - start))
+                        .flatMap(status -> status == HttpStatus.OK ? chain.filter(exchange) : reject(exchange, status));
+            }
+
+            return remoteTokenValidator.isValid(token.substring(7))
+                    .doOnNext(valid -> meters.jwtValidated(System.nanoTime() - start))
+                    .doOnError(e -> meters.jwtValidated(System.nanoTime() - start))
+                    .flatMap(valid -> {
+                        if (!valid) {
+                            return reject(exchange, HttpStatus.UNAUTHORIZED);
+                        }
+                        exchange.getAttributes().put(JwtClaims.ATTRIBUTE, JwtClaims.unverifiedPayload(token.substring(7)));
+                        return chain.filter(exchange);
+                    });
         };
     }
+
+    private static Mono<Void> reject(ServerWebExchange exchange, HttpStatus status){
+        exchange.getResponse().setStatusCode(status);
+        return exchange.getResponse().setComplete();
+    }
 }
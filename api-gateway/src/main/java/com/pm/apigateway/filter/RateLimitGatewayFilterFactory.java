@@ -0,0 +1,121 @@
+package com.pm.apigateway.filter;
+
+import com.pm.apigateway.jwt.JwtClaims;
+import com.pm.apigateway.ratelimit.GcraBucketStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.ipresolver.XForwardedRemoteAddressResolver;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Per node rate limit, e.g. {@code - RateLimit=SUBJECT, 20, 40} allows each user 20 requests per second with
+ * bursts of up to 40. Buckets are kept in memory on each gateway node, so with N nodes behind the load balancer a
+ * client can get up to N times the configured rate. Rejected requests get 429 with Retry-After.
+ * <p>
+ * SUBJECT and ROLE are read from the token accepted by JwtValidation, so this must come after it in the route's
+ * filters; requests without one are limited by client IP.
+ */
+@Component
+public class RateLimitGatewayFilterFactory extends AbstractGatewayFilterFactory<RateLimitGatewayFilterFactory.Config> {
+
+    public enum KeyType {
+        SUBJECT,
+        ROLE,
+        IP
+    }
+
+    private final XForwardedRemoteAddressResolver remoteAddressResolver;
+    private final MeterRegistry meterRegistry;
+    private final List<GcraBucketStore> bucketStores = new CopyOnWriteArrayList<>();
+
+    public RateLimitGatewayFilterFactory(
+            // proxies in front of the gateway that append to X-Forwarded-For (the ALB), entries before theirs can be forged
+            @Value("${gateway.rate-limit.trusted-proxies:1}") int trustedProxies,
+            MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.remoteAddressResolver = XForwardedRemoteAddressResolver.maxTrustedIndex(trustedProxies);
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("gateway.ratelimit.buckets", bucketStores, stores -> stores.stream().mapToInt(GcraBucketStore::size).sum())
+                .description("Rate limit buckets held in memory")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder(){
+        return List.of("key", "replenishRate", "burstCapacity");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config){
+        GcraBucketStore buckets = new GcraBucketStore(config.getReplenishRate(), config.getBurstCapacity());
+        bucketStores.add(buckets);
+        Counter rejected = Counter.builder("gateway.ratelimit.rejected")
+                .description("Requests rejected by a rate limit")
+                .tag("route", Objects.requireNonNullElse(config.getRouteId(), "none"))
+                .tag("key", config.getKey().name())
+                .register(meterRegistry);
+
+        return (exchange, chain) -> {
+            long result = buckets.tryAcquire(key(config.getKey(), exchange), System.nanoTime());
+            HttpHeaders headers = exchange.getResponse().getHeaders();
+
+            if (result >= 0) {
+                headers.set("X-RateLimit-Remaining", Long.toString(result));
+                return chain.filter(exchange);
+            }
+
+            rejected.increment();
+            headers.set("X-RateLimit-Remaining", "0");
+            headers.set(HttpHeaders.RETRY_AFTER, Long.toString(GcraBucketStore.retryAfterSeconds(result)));
+            exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+            return exchange.getResponse().setComplete();
+        };
+    }
+
+    @Scheduled(fixedDelayString = "${gateway.rate-limit.sweep-interval-ms:10000}")
+    public void evictIdleBuckets(){
+        long now = System.nanoTime();
+        bucketStores.forEach(buckets -> buckets.evictIdle(now));
+    }
+
+    private String key(KeyType keyType, ServerWebExchange exchange){
+        Map<String, Object> claims = exchange.getAttribute(JwtClaims.ATTRIBUTE);
+        if (claims != null && keyType != KeyType.IP) {
+            Object value = claims.get(keyType == KeyType.SUBJECT ? "sub" : "role");
+            if (value != null) {
+                return value.toString();
+            }
+        }
+        InetSocketAddress address = remoteAddressResolver.resolve(exchange);
+        return "ip:" + (address == null ? "unknown" : address.getHostString());
+    }
+
+    @Getter
+    @Setter
+    public static class Config implements HasRouteId {
+
+        private KeyType key = KeyType.SUBJECT;
+        // tokens added per second
+        private double replenishRate = 10;
+        // most requests allowed at once after a quiet period
+        private int burstCapacity = 20;
+        private String routeId;
+    }
+}
@@ -0,0 +1,68 @@
+package com.pm.apigateway.filter;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.cache.LocalResponseCacheGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The gateway's LocalResponseCache for a route, but switchable: when
+ * spring.cloud.gateway.filter.local-response-cache.enabled is off this passes requests straight through, where
+ * LocalResponseCache itself would fail startup.
+ * <p>
+ * LocalResponseCache keys entries by URI and Authorization header, which would give every token a cache of its own.
+ * Patient data looks the same to every user, so the token is dropped from the request here and one entry serves
+ * all of them. That makes the filter only safe after JwtValidation (a revoked or missing token never gets this far)
+ * and on routes whose upstream doesn't read the token.
+ */
+@Component
+public class ResponseCacheGatewayFilterFactory extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+    private final ObjectProvider<LocalResponseCacheGatewayFilterFactory> localResponseCache;
+
+    public ResponseCacheGatewayFilterFactory(ObjectProvider<LocalResponseCacheGatewayFilterFactory> localResponseCache) {
+        super(Config.class);
+        this.localResponseCache = localResponseCache;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder(){
+        return List.of("timeToLive", "size");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config){
+        LocalResponseCacheGatewayFilterFactory factory = localResponseCache.getIfAvailable();
+        if (factory == null) {
+            return (exchange, chain) -> chain.filter(exchange);
+        }
+
+        LocalResponseCacheGatewayFilterFactory.RouteCacheConfiguration cacheConfig = factory.newConfig()
+                .setTimeToLive(config.getTimeToLive())
+                .setSize(config.getSize());
+        cacheConfig.setRouteId(config.getRouteId());
+        GatewayFilter cache = factory.apply(cacheConfig);
+        return (exchange, chain) -> cache.filter(exchange.mutate()
+                .request(request -> request.headers(headers -> headers.remove(HttpHeaders.AUTHORIZATION)))
+                .build(), chain);
+    }
+
+    @Getter
+    @Setter
+    public static class Config implements HasRouteId {
+
+        // how long a response is served without asking the upstream, changes made meanwhile are not seen
+        private Duration timeToLive = Duration.ofSeconds(5);
+        private DataSize size = DataSize.ofMegabytes(20);
+        private String routeId;
+    }
+}
@@ -0,0 +1,34 @@
+package com.pm.apigateway.jwt;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Base64;
+import java.util.Map;
+
+public final class JwtClaims {
+
+    /**
+     * Exchange attribute holding the claims of a request's token once JwtValidation has accepted it.
+     */
+    public static final String ATTRIBUTE = JwtClaims.class.getName() + ".claims";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private JwtClaims() {
+    }
+
+    /**
+     * The token's payload WITHOUT checking the signature, only for tokens that have already been validated.
+     *
+     * @return the claims, empty if the token is malformed
+     */
+    public static Map<String, Object> unverifiedPayload(String token){
+        try {
+            String[] parts = token.split("\\.");
+            return objectMapper.readValue(Base64.getUrlDecoder().decode(parts[1]), new TypeReference<>() {});
+        } catch (Exception e) {
+            return Map.of();
+        }
+    }
+}
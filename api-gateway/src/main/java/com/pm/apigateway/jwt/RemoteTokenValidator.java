@@ -0,0 +1,125 @@
+package com.pm.apigateway.jwt;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Token validation through auth-service's /validate, for auth.jwt.verification=remote. Answers are cached by the
+ * SHA-256 of the token, valid ones until the token's exp (capped by {@code max-ttl}, so a revoked token stops
+ * working within that time), rejections for {@code negative-ttl}. Concurrent requests with the same token share
+ * one in-flight call: a page firing 20 API calls at once costs one validation. Errors other than 401 are not
+ * cached.
+ */
+@Component
+public class RemoteTokenValidator {
+
+    private final WebClient webClient;
+    private final AsyncCache<String, Validation> validations;
+    private final Timer validateTimer;
+
+    public RemoteTokenValidator(WebClient.Builder webClientBuilder,
+                                @Value("${auth.service.url}") String authServiceUrl,
+                                @Value("${auth.jwt.validation-cache.max-size:10000}") long maxSize,
+                                @Value("${auth.jwt.validation-cache.max-ttl:5m}") Duration maxTtl,
+                                @Value("${auth.jwt.validation-cache.negative-ttl:10s}") Duration negativeTtl,
+                                MeterRegistry meterRegistry) {
+        this.webClient = webClientBuilder.baseUrl(authServiceUrl).build();
+        this.validations = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Validation>() {
+                    @Override
+                    public long expireAfterCreate(String key, Validation validation, long currentTime) {
+                        return (validation.valid() ? clamp(validation.ttl(), maxTtl) : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Validation validation, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, validation, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Validation validation, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, validations, "jwtValidations");
+        this.validateTimer = Timer.builder("gateway.jwt.remote_validation.latency")
+                .description("Calls to auth-service /validate, cache misses only")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true if auth-service accepts the token, false if it answered 401, an error otherwise
+     */
+    public Mono<Boolean> isValid(String token){
+        CompletableFuture<Validation> validation = validations.get(sha256(token), (key, executor) -> callValidate(token));
+        // one caller going away must not cancel the call the others are waiting for
+        return Mono.fromFuture(validation, true).map(Validation::valid);
+    }
+
+    private CompletableFuture<Validation> callValidate(String token){
+        Timer.Sample sample = Timer.start();
+        return webClient.get()
+                .uri("/validate")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .retrieve()
+                .toBodilessEntity()
+                .map(response -> new Validation(true, timeToExpiry(token)))
+                .onErrorResume(WebClientResponseException.Unauthorized.class, e -> Mono.just(new Validation(false, Duration.ZERO)))
+                .doFinally(signal -> sample.stop(validateTimer))
+                .toFuture();
+    }
+
+    // exp is read without checking the signature, auth-service has just vouched for this exact token
+    private static Duration timeToExpiry(String token){
+        Map<String, Object> claims = JwtClaims.unverifiedPayload(token);
+        if (claims.isEmpty()) {
+            return Duration.ZERO;
+        }
+        if (!(claims.get("exp") instanceof Number exp)) {
+            return Duration.ofDays(1);
+        }
+        return Duration.ofSeconds(exp.longValue() - System.currentTimeMillis() / 1000);
+    }
+
+    private static Duration clamp(Duration ttl, Duration maxTtl){
+        if (ttl.isNegative()) {
+            return Duration.ZERO;
+        }
+        return ttl.compareTo(maxTtl) > 0 ? maxTtl : ttl;
+    }
+
+    private static String sha256(String token){
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Validation(boolean valid, Duration ttl) {
+    }
+}
@@ -0,0 +1,134 @@
+package com.pm.apigateway.jwt;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revoked token ids (jti) mirrored from auth-service, for auth.jwt.verification=local. A Bloom filter answers the
+ * common "not revoked" case; only its hits go on to the exact set, so a check is a few bit reads and never a
+ * network call. The list follows auth-service's /revocations feed, fetching only what changed since the previous
+ * poll, so a revocation takes effect within {@code poll-interval}. When auth-service can't be reached the last
+ * known list keeps being used.
+ * <p>
+ * Entries go away when their tokens expire: they are dropped from the exact set on the next poll and from the
+ * filter when it is rebuilt, which happens once enough have expired or it has grown past its capacity.
+ */
+@Component
+@Slf4j
+public class RevokedTokenList {
+
+    private final WebClient webClient;
+    private final int expectedRevocations;
+    private final double falsePositiveRate;
+
+    private volatile Snapshot snapshot;
+    // only touched by the poll, which never runs concurrently with itself
+    private final Map<String, Instant> expiries = new HashMap<>();
+    private int expiredSinceRebuild;
+    private Instant since;
+    private volatile Instant lastSync = Instant.EPOCH;
+
+    public RevokedTokenList(WebClient.Builder webClientBuilder,
+                            @Value("${auth.service.url}") String authServiceUrl,
+                            @Value("${auth.jwt.revocations.expected-size:100000}") int expectedRevocations,
+                            @Value("${auth.jwt.revocations.false-positive-rate:0.01}") double falsePositiveRate,
+                            MeterRegistry meterRegistry) {
+        // the first sync returns every live revocation, about 100 bytes each, well past the default 256 KB limit
+        this.webClient = webClientBuilder.baseUrl(authServiceUrl)
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize((int) Math.min(Integer.MAX_VALUE, expectedRevocations * 128L)))
+                .build();
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveRate = falsePositiveRate;
+        this.snapshot = new Snapshot(new BloomFilter(expectedRevocations, falsePositiveRate), ConcurrentHashMap.newKeySet(), expectedRevocations);
+
+        Gauge.builder("gateway.jwt.revocations.size", this, list -> list.snapshot.exact().size())
+                .description("Revoked tokens known to the gateway")
+                .register(meterRegistry);
+        Gauge.builder("gateway.jwt.revocations.staleness", this, list -> Duration.between(list.lastSync, Instant.now()).toMillis() / 1000.0)
+                .description("Seconds since the revocation list was last synced with auth-service")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    public boolean isRevoked(String jti){
+        if (jti == null) {
+            return false;
+        }
+        Snapshot current = snapshot;
+        return current.filter().mightContain(jti) && current.exact().contains(jti);
+    }
+
+    @Scheduled(fixedDelayString = "${auth.jwt.revocations.poll-interval-ms:5000}")
+    public Mono<Void> poll(){
+        return webClient.get()
+                .uri(uri -> uri.path("/revocations").queryParamIfPresent("since", Optional.ofNullable(since)).build())
+                .retrieve()
+                .bodyToMono(RevocationFeed.class)
+                .doOnNext(this::apply)
+                .onErrorResume(e -> {
+                    log.warn("Could not sync revoked tokens from auth-service, last sync {}: {}", lastSync, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private void apply(RevocationFeed feed){
+        Snapshot current = snapshot;
+        for (Revocation revocation : feed.revocations()) {
+            if (expiries.put(revocation.jti(), revocation.expiresAt()) == null) {
+                current.filter().add(revocation.jti());
+                current.exact().add(revocation.jti());
+            }
+        }
+
+        int before = expiries.size();
+        expiries.values().removeIf(expiresAt -> expiresAt.isBefore(feed.asOf()));
+        if (expiries.size() < before) {
+            current.exact().retainAll(expiries.keySet());
+            expiredSinceRebuild += before - expiries.size();
+        }
+
+        if (expiries.size() > current.capacity() || expiredSinceRebuild > current.capacity() / 2) {
+            rebuild();
+        }
+        since = feed.asOf();
+        lastSync = Instant.now();
+    }
+
+    private void rebuild(){
+        int capacity = Math.max(expectedRevocations, expiries.size() * 2);
+        BloomFilter filter = new BloomFilter(capacity, falsePositiveRate);
+        Set<String> exact = ConcurrentHashMap.newKeySet(expiries.size());
+        expiries.keySet().forEach(jti -> {
+            filter.add(jti);
+            exact.add(jti);
+        });
+        snapshot = new Snapshot(filter, exact, capacity);
+        expiredSinceRebuild = 0;
+        log.info("Rebuilt revoked token filter, {} entries, capacity {}", exact.size(), capacity);
+    }
+
+    private record Snapshot(BloomFilter filter, Set<String> exact, int capacity) {
+    }
+
+    record RevocationFeed(List<Revocation> revocations, Instant asOf) {
+    }
+
+    record Revocation(String jti, Instant expiresAt) {
+    }
+}
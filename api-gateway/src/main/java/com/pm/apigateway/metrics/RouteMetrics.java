@@ -0,0 +1,124 @@
+package com.pm.apigateway.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Where the time of a request through the gateway goes, per route id: the whole request, JWT validation and the
+ * wait for the service's response headers, each as a Prometheus histogram, plus responses by status and requests
+ * in flight. The meters of a route are registered on its first request and then looked up by route id, so
+ * recording is a map lookup and a few atomic adds, without building tags or allocating.
+ */
+@Component
+public class RouteMetrics {
+
+    private static final String UNKNOWN_ROUTE = "unknown";
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Meters> routes = new ConcurrentHashMap<>();
+
+    public RouteMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Meters of(ServerWebExchange exchange){
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        String routeId = route != null ? route.getId() : UNKNOWN_ROUTE;
+        Meters meters = routes.get(routeId);
+        return meters != null ? meters : routes.computeIfAbsent(routeId, id -> new Meters(id, meterRegistry));
+    }
+
+    public static final class Meters {
+
+        private final String routeId;
+        private final MeterRegistry meterRegistry;
+        private final Timer requests;
+        private final Timer upstream;
+        private final Timer jwtValidation;
+        private final AtomicInteger activeRequests = new AtomicInteger();
+        private final AtomicInteger activeUpstream = new AtomicInteger();
+        // indexed by status code, registered when a code is first seen
+        private final AtomicReferenceArray<Counter> responses = new AtomicReferenceArray<>(600);
+
+        private Meters(String routeId, MeterRegistry meterRegistry) {
+            this.routeId = routeId;
+            this.meterRegistry = meterRegistry;
+            this.requests = Timer.builder("gateway.route.requests")
+                    .description("Requests through the gateway, from routing to the response being written")
+                    .tag("route", routeId)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.upstream = Timer.builder("gateway.route.upstream")
+                    .description("Time from sending a request to the service until its response headers arrive")
+                    .tag("route", routeId)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.jwtValidation = Timer.builder("gateway.route.jwt_validation")
+                    .description("Time spent validating the bearer token before the request is routed")
+                    .tag("route", routeId)
+                    .publishPercentileHistogram()
+                    // a local check takes microseconds, the default buckets start at 1 ms
+                    .minimumExpectedValue(Duration.ofNanos(10_000))
+                    .maximumExpectedValue(Duration.ofSeconds(5))
+                    .register(meterRegistry);
+            Gauge.builder("gateway.route.requests.active", activeRequests, AtomicInteger::get)
+                    .description("Requests in the gateway right now")
+                    .tag("route", routeId)
+                    .register(meterRegistry);
+            Gauge.builder("gateway.route.upstream.active", activeUpstream, AtomicInteger::get)
+                    .description("Requests waiting on the service right now")
+                    .tag("route", routeId)
+                    .register(meterRegistry);
+        }
+
+        public void requestStarted(){
+            activeRequests.incrementAndGet();
+        }
+
+        public void requestFinished(int status, long nanos){
+            activeRequests.decrementAndGet();
+            requests.record(nanos, TimeUnit.NANOSECONDS);
+            responses(status).increment();
+        }
+
+        public void upstreamStarted(){
+            activeUpstream.incrementAndGet();
+        }
+
+        public void upstreamFinished(long nanos){
+            activeUpstream.decrementAndGet();
+            upstream.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void jwtValidated(long nanos){
+            jwtValidation.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        private Counter responses(int status){
+            int index = status >= 100 && status < responses.length() ? status : 0;
+            Counter counter = responses.get(index);
+            if (counter == null) {
+                counter = Counter.builder("gateway.route.responses")
+                        .description("Responses sent by the gateway, including the ones it answered itself (401, 429, cache hits)")
+                        .tag("route", routeId)
+                        .tag("status", index == 0 ? "UNKNOWN" : Integer.toString(index))
+                        .register(meterRegistry);
+                responses.set(index, counter);
+            }
+            return counter;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.pm.apigateway.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Runs first on every routed request and records its total time, status and the in-flight count in
+ * {@link RouteMetrics}.
+ */
+@Component
+@RequiredArgsConstructor
+public class RouteMetricsFilter implements GlobalFilter, Ordered {
+
+    private static final String FAILURE_STATUS = RouteMetricsFilter.class.getName() + ".failureStatus";
+
+    private final RouteMetrics routeMetrics;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain){
+        RouteMetrics.Meters meters = routeMetrics.of(exchange);
+        long start = System.nanoTime();
+        meters.requestStarted();
+        return chain.filter(exchange)
+                // the error handler sets the status only after this filter is done
+                .doOnError(e -> exchange.getAttributes().put(FAILURE_STATUS,
+                        e instanceof ResponseStatusException statusException ? statusException.getStatusCode().value() : 500))
+                .doFinally(signal -> meters.requestFinished(status(exchange, signal), System.nanoTime() - start));
+    }
+
+    private static int status(ServerWebExchange exchange, SignalType signal){
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        if (status != null) {
+            return status.value();
+        }
+        if (signal == SignalType.ON_ERROR) {
+            return exchange.getAttributeOrDefault(FAILURE_STATUS, 500);
+        }
+        // cancelled by the client before there was a response
+        return signal == SignalType.CANCEL ? 0 : 200;
+    }
+
+    @Override
+    public int getOrder(){
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
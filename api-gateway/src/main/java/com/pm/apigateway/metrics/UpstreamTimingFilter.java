@@ -0,0 +1,36 @@
+package com.pm.apigateway.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sits right in front of {@link NettyRoutingFilter}, whose Mono completes once the service's response headers are
+ * in, so this times the service (and the wait for a pooled connection) apart from the gateway's own filters.
+ * Requests answered by the gateway itself never get here.
+ */
+@Component
+@RequiredArgsConstructor
+public class UpstreamTimingFilter implements GlobalFilter, Ordered {
+
+    private final RouteMetrics routeMetrics;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain){
+        RouteMetrics.Meters meters = routeMetrics.of(exchange);
+        long start = System.nanoTime();
+        meters.upstreamStarted();
+        return chain.filter(exchange)
+                .doFinally(signal -> meters.upstreamFinished(System.nanoTime() - start));
+    }
+
+    @Override
+    public int getOrder(){
+        return NettyRoutingFilter.ORDER - 1;
+    }
+}
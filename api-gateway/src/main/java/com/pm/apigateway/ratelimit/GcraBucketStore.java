@@ -0,0 +1,97 @@
+package com.pm.apigateway.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets per key using GCRA (the generic cell rate algorithm): instead of a token count and a refill time,
+ * each key has a single "theoretical arrival time" (TAT), the time at which its bucket would be full again. A
+ * request is let through if pushing TAT forward by one emission interval keeps it within the burst window, which
+ * is one CAS on an AtomicLong, no locks and no refill timer.
+ * <p>
+ * Keys are spread over a fixed number of map stripes so {@link #evictIdle} can sweep them one at a time. A key
+ * whose TAT is in the past has a full bucket, so dropping it changes nothing and that is the only kind removed.
+ */
+public class GcraBucketStore {
+
+    private static final int STRIPES = 16;
+
+    private final ConcurrentHashMap<String, AtomicLong>[] stripes;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+
+    @SuppressWarnings("unchecked")
+    public GcraBucketStore(double replenishPerSecond, int burstCapacity){
+        if (replenishPerSecond <= 0 || burstCapacity < 1) {
+            throw new IllegalArgumentException("Rate limit needs a positive rate and a burst capacity of at least 1");
+        }
+        this.emissionIntervalNanos = Math.max(1, (long) (1_000_000_000L / replenishPerSecond));
+        this.burstToleranceNanos = emissionIntervalNanos * burstCapacity;
+        this.stripes = new ConcurrentHashMap[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * Takes one token from the key's bucket if there is one.
+     *
+     * @return the tokens left if the request is allowed (0 or more), otherwise minus the nanoseconds until a token
+     * is available (less than 0)
+     */
+    public long tryAcquire(String key, long nowNanos){
+        ConcurrentHashMap<String, AtomicLong> stripe = stripe(key);
+        AtomicLong tat = stripe.get(key);
+        if (tat == null) {
+            AtomicLong created = new AtomicLong(nowNanos);
+            tat = stripe.putIfAbsent(key, created);
+            if (tat == null) {
+                tat = created;
+            }
+        }
+
+        while (true) {
+            long current = tat.get();
+            long newTat = Math.max(current, nowNanos) + emissionIntervalNanos;
+            long ahead = newTat - nowNanos;
+            if (ahead > burstToleranceNanos) {
+                return -(ahead - burstToleranceNanos);
+            }
+            if (tat.compareAndSet(current, newTat)) {
+                return (burstToleranceNanos - ahead) / emissionIntervalNanos;
+            }
+        }
+    }
+
+    /**
+     * @param rejected what {@link #tryAcquire} returned for a rejected request
+     * @return whole seconds until a token is available, rounded up and at least 1, for Retry-After
+     */
+    public static long retryAfterSeconds(long rejected){
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(-rejected + 999_999_999L));
+    }
+
+    /**
+     * Drops the keys whose buckets have refilled. A request racing the removal may land on the dropped bucket and
+     * get one token more than it should have.
+     */
+    public void evictIdle(long nowNanos){
+        for (ConcurrentHashMap<String, AtomicLong> stripe : stripes) {
+            stripe.values().removeIf(tat -> tat.get() - nowNanos <= 0);
+        }
+    }
+
+    public int size(){
+        int size = 0;
+        for (ConcurrentHashMap<String, AtomicLong> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private ConcurrentHashMap<String, AtomicLong> stripe(String key){
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+}
@@ -0,0 +1,74 @@
+package com.pm.apigateway.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.cache.LocalResponseCacheGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.cache.ResponseCacheManagerFactory;
+import org.springframework.cloud.gateway.filter.factory.cache.keygenerator.CacheKeyGenerator;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ResponseCacheGatewayFilterFactoryTest {
+
+    private final List<String> upstreamAuthorization = new ArrayList<>();
+
+    // stands in for patient-service, counts the requests that reach it
+    private final GatewayFilterChain upstream = exchange -> {
+        upstreamAuthorization.add(String.valueOf(exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION)));
+        exchange.getResponse().setStatusCode(HttpStatus.OK);
+        return exchange.getResponse().writeWith(Mono.just(
+                exchange.getResponse().bufferFactory().wrap("[]".getBytes(StandardCharsets.UTF_8))));
+    };
+
+    @Test
+    void oneCachedResponseServesEveryUser() {
+        GatewayFilter filter = filter(new LocalResponseCacheGatewayFilterFactory(
+                new ResponseCacheManagerFactory(new CacheKeyGenerator()), Duration.ofMinutes(1), DataSize.ofMegabytes(1)));
+
+        filter.filter(get("Bearer alice"), upstream).block();
+        filter.filter(get("Bearer bob"), upstream).block();
+        filter.filter(get("Bearer alice"), upstream).block();
+
+        assertEquals(List.of("null"), upstreamAuthorization);
+    }
+
+    @Test
+    void passesThroughWhenTheCacheIsDisabled() {
+        GatewayFilter filter = filter(null);
+
+        filter.filter(get("Bearer alice"), upstream).block();
+        filter.filter(get("Bearer alice"), upstream).block();
+
+        assertEquals(List.of("Bearer alice", "Bearer alice"), upstreamAuthorization);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static GatewayFilter filter(LocalResponseCacheGatewayFilterFactory localResponseCache){
+        ObjectProvider<LocalResponseCacheGatewayFilterFactory> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(localResponseCache);
+        ResponseCacheGatewayFilterFactory factory = new ResponseCacheGatewayFilterFactory(provider);
+        ResponseCacheGatewayFilterFactory.Config config = new ResponseCacheGatewayFilterFactory.Config();
+        config.setRouteId("patient-service-route");
+        return factory.apply(config);
+    }
+
+    private static MockServerWebExchange get(String authorization){
+        return MockServerWebExchange.from(MockServerHttpRequest.get("http://gateway/patients?limit=20")
+                .header(HttpHeaders.AUTHORIZATION, authorization));
+    }
+}
@@ -0,0 +1,100 @@
+package com.pm.apigateway.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// auth-service's /revocations answered from a queue of feeds
+class RevokedTokenListTest {
+
+    private static final Instant T0 = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final Deque<String> feeds = new ArrayDeque<>();
+    private final List<URI> requests = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // capacity of 16 so a few dozen revocations force a rebuild
+    private final RevokedTokenList revokedTokens = new RevokedTokenList(WebClient.builder().exchangeFunction(request -> {
+        requests.add(request.url());
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(feeds.remove())
+                .build());
+    }), "http://auth-service:4005", 16, 0.01, meterRegistry);
+
+    @Test
+    void revokedUntilTheTokenExpires() {
+        sync(T0, revocation("a", T0.plusSeconds(60)), revocation("b", T0.plusSeconds(600)));
+        assertTrue(revokedTokens.isRevoked("a"));
+        assertTrue(revokedTokens.isRevoked("b"));
+        assertFalse(revokedTokens.isRevoked("c"));
+
+        // a has expired, it can't be presented any more and is dropped
+        sync(T0.plusSeconds(120));
+        assertFalse(revokedTokens.isRevoked("a"));
+        assertTrue(revokedTokens.isRevoked("b"));
+        assertEquals(1, meterRegistry.get("gateway.jwt.revocations.size").gauge().value());
+    }
+
+    @Test
+    void onlyAsksForWhatChangedSinceTheLastSync() {
+        sync(T0);
+        sync(T0.plusSeconds(5));
+
+        assertNull(requests.get(0).getQuery());
+        assertEquals("since=" + T0, requests.get(1).getQuery());
+    }
+
+    @Test
+    void noFalseNegativesAfterRebuilds() {
+        // past capacity: the filter is rebuilt larger
+        List<String> live = IntStream.range(0, 100).mapToObj(i -> "live-" + i).toList();
+        sync(T0, live.stream().map(jti -> revocation(jti, T0.plusSeconds(3600))).toArray(String[]::new));
+        live.forEach(jti -> assertTrue(revokedTokens.isRevoked(jti), jti));
+
+        // enough expired: rebuilt without them
+        List<String> shortLived = IntStream.range(0, 200).mapToObj(i -> "short-" + i).toList();
+        sync(T0.plusSeconds(1), shortLived.stream().map(jti -> revocation(jti, T0.plusSeconds(10))).toArray(String[]::new));
+        sync(T0.plusSeconds(20));
+
+        live.forEach(jti -> assertTrue(revokedTokens.isRevoked(jti), jti));
+        shortLived.forEach(jti -> assertFalse(revokedTokens.isRevoked(jti), jti));
+        assertEquals(live.size(), meterRegistry.get("gateway.jwt.revocations.size").gauge().value());
+    }
+
+    @Test
+    void keepsTheLastListWhenAuthServiceIsDown() {
+        sync(T0, revocation("a", T0.plusSeconds(60)));
+        // nothing queued, the exchange fails
+        revokedTokens.poll().block();
+
+        assertTrue(revokedTokens.isRevoked("a"));
+    }
+
+    private void sync(Instant asOf, String... revocations){
+        feeds.add("{\"revocations\":[" + String.join(",", revocations) + "],\"asOf\":\"" + asOf + "\"}");
+        revokedTokens.poll().block();
+    }
+
+    private static String revocation(String jti, Instant expiresAt){
+        return "{\"jti\":\"" + jti + "\",\"expiresAt\":\"" + expiresAt + "\"}";
+    }
+}
@@ -0,0 +1,88 @@
+package com.pm.apigateway.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GcraBucketStoreTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // 10 per second is one token every 100 ms
+    private final GcraBucketStore buckets = new GcraBucketStore(10, 5);
+
+    @Test
+    void burstIsAllowedThenRejectedUntilTheNextToken() {
+        for (int remaining = 4; remaining >= 0; remaining--) {
+            assertEquals(remaining, buckets.tryAcquire("client", 0));
+        }
+        assertEquals(-100 * MS, buckets.tryAcquire("client", 0));
+        // a rejected request doesn't use up anything
+        assertEquals(-60 * MS, buckets.tryAcquire("client", 40 * MS));
+    }
+
+    @Test
+    void tokensRefillAtTheRateUpToTheBurst() {
+        drain("client", 0);
+
+        assertEquals(0, buckets.tryAcquire("client", 100 * MS));
+        assertTrue(buckets.tryAcquire("client", 100 * MS) < 0);
+
+        // long idle, the bucket is full again but holds no more than the burst
+        assertEquals(5, drain("client", 10_000 * MS));
+    }
+
+    @Test
+    void keysHaveTheirOwnBuckets() {
+        drain("a", 0);
+
+        assertTrue(buckets.tryAcquire("a", 0) < 0);
+        assertEquals(4, buckets.tryAcquire("b", 0));
+    }
+
+    @Test
+    void retryAfterRoundsUpToWholeSeconds() {
+        assertEquals(1, GcraBucketStore.retryAfterSeconds(-1));
+        assertEquals(1, GcraBucketStore.retryAfterSeconds(-1_000 * MS));
+        assertEquals(2, GcraBucketStore.retryAfterSeconds(-1_000 * MS - 1));
+
+        // one token every 2 s: a client that just used it has to wait 2 s
+        GcraBucketStore slow = new GcraBucketStore(0.5, 1);
+        assertEquals(0, slow.tryAcquire("client", 0));
+        assertEquals(2, GcraBucketStore.retryAfterSeconds(slow.tryAcquire("client", 0)));
+        assertEquals(1, GcraBucketStore.retryAfterSeconds(slow.tryAcquire("client", 1_500 * MS)));
+    }
+
+    @Test
+    void evictionDropsOnlyRefilledBuckets() {
+        buckets.tryAcquire("idle", 0);
+        drain("busy", 0);
+
+        // idle refilled at 100 ms, busy only at 500 ms
+        buckets.evictIdle(200 * MS);
+        assertEquals(1, buckets.size());
+
+        // busy kept its state: two tokens back by 200 ms, one left after this request
+        assertEquals(1, buckets.tryAcquire("busy", 200 * MS));
+        // idle starts over with a full bucket, as it would have had anyway
+        assertEquals(4, buckets.tryAcquire("idle", 200 * MS));
+    }
+
+    @Test
+    void rejectsRatesThatCannotLetAnythingThrough() {
+        assertThrows(IllegalArgumentException.class, () -> new GcraBucketStore(0, 5));
+        assertThrows(IllegalArgumentException.class, () -> new GcraBucketStore(10, 0));
+    }
+
+    private int drain(String key, long nowNanos){
+        int allowed = 0;
+        while (buckets.tryAcquire(key, nowNanos) >= 0) {
+            allowed++;
+        }
+        return allowed;
+    }
+}
@@ -3,26 +3,42 @@ package com.pm.authservice.controller;
 
 import com.pm.authservice.dto.LoginRequestDTO;
 import com.pm.authservice.dto.LoginResponseDTO;
+import com.pm.authservice.dto.RevocationFeedDTO;
+import com.pm.authservice.dto.RevokeTokenRequestDTO;
 import com.pm.authservice.service.AuthService;
+import com.pm.authservice.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
 import io.swagger.v3.oas.annotations.Operation;
-import lombok.RequiredArgsConstructor;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
 import java.util.Optional;
 
 @RestController
-@RequiredArgsConstructor
 public class AuthController {
 
     private final AuthService authService;
+    private final TokenRevocationService tokenRevocationService;
+    private final int trustedProxies;
+
+    public AuthController(AuthService authService,
+                          TokenRevocationService tokenRevocationService,
+                          @Value("${auth.login.trusted-proxies:2}") int trustedProxies) {
+        this.authService = authService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.trustedProxies = trustedProxies;
+    }
 
     @Operation(summary = "Generate token on user login")
     @PostMapping("/login")
-    public ResponseEntity<LoginResponseDTO>  login(@RequestBody LoginRequestDTO loginRequestDTO){
+    public ResponseEntity<LoginResponseDTO>  login(@RequestBody LoginRequestDTO loginRequestDTO,
+                                                   HttpServletRequest request){
 
-        Optional<String> tokenOptional = authService.authenticate(loginRequestDTO);
+        Optional<String> tokenOptional = authService.authenticate(loginRequestDTO, clientIp(request));
 
         if(tokenOptional.isEmpty()){
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
@@ -48,4 +64,61 @@ public class AuthController {
                 ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
 
     }
+
+    @Operation(summary = "Revoke the caller's own token")
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(
+            @RequestHeader(value = "Authorization", required = false) String authHeader){
+
+        if(authHeader == null || !authHeader.startsWith("Bearer ")){
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        return authService.revoke(authHeader.substring(7))
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+    }
+
+    @Operation(summary = "Revoke another user's token, admins only")
+    @PostMapping("/revoke")
+    public ResponseEntity<Void> revoke(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @RequestBody RevokeTokenRequestDTO revokeTokenRequestDTO){
+
+        if(authHeader == null || !authHeader.startsWith("Bearer ")){
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        Optional<Claims> caller = authService.parseToken(authHeader.substring(7));
+        if(caller.isEmpty()){
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if(!"ADMIN".equals(caller.get().get("role", String.class))){
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return revokeTokenRequestDTO.getToken() != null && authService.revoke(revokeTokenRequestDTO.getToken())
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.badRequest().build();
+    }
+
+    @Operation(summary = "Revoked token ids since the given time, polled by the gateway")
+    @GetMapping("/revocations")
+    public ResponseEntity<RevocationFeedDTO> revocations(
+            @RequestParam(required = false) Instant since){
+
+        return ResponseEntity.ok(tokenRevocationService.feed(since));
+    }
+
+    // The client can put anything at the start of X-Forwarded-For, only the entries the trusted proxies appended
+    // count: the caller is the trustedProxies-th from the right, like the gateway's XForwardedRemoteAddressResolver
+    private String clientIp(HttpServletRequest request){
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        if (trustedProxies <= 0 || forwardedFor == null || forwardedFor.isBlank()) {
+            return request.getRemoteAddr();
+        }
+        String[] entries = forwardedFor.split(",");
+        // fewer entries than proxies: the request skipped some of them, all entries are still theirs
+        return entries[Math.max(0, entries.length - trustedProxies)].trim();
+    }
 }
@@ -0,0 +1,51 @@
+package com.pm.authservice.controller;
+
+import com.pm.authservice.service.AuthService;
+import com.pm.authservice.service.UserImportService;
+import io.jsonwebtoken.Claims;
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Optional;
+
+@RestController
+@RequiredArgsConstructor
+public class UserController {
+
+    private final AuthService authService;
+    private final UserImportService userImportService;
+
+    // one {"email","password","role"} per line in, one {"line","email","status","message"} per line out
+    @Operation(summary = "Create users in bulk from newline delimited JSON, admins only")
+    @PostMapping(value = "/users/import", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> importUsers(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            HttpServletRequest request){
+
+        if(authHeader == null || !authHeader.startsWith("Bearer ")){
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        Optional<Claims> caller = authService.parseToken(authHeader.substring(7));
+        if(caller.isEmpty()){
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if(!"ADMIN".equals(caller.get().get("role", String.class))){
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        StreamingResponseBody results = out -> userImportService.importUsers(request.getInputStream(), out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(results);
+    }
+}
@@ -0,0 +1,6 @@
+package com.pm.authservice.dto;
+
+import java.time.Instant;
+
+public record RevocationDTO(String jti, Instant expiresAt) {
+}
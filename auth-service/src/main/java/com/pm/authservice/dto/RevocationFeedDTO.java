@@ -0,0 +1,10 @@
+package com.pm.authservice.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * @param asOf pass back as {@code since} on the next poll
+ */
+public record RevocationFeedDTO(List<RevocationDTO> revocations, Instant asOf) {
+}
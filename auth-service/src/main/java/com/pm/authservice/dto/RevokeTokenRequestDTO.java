@@ -0,0 +1,14 @@
+package com.pm.authservice.dto;
+
+public class RevokeTokenRequestDTO {
+
+    private String token;
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+}
@@ -0,0 +1,12 @@
+package com.pm.authservice.dto;
+
+public record UserImportResultDTO(long line, String email, Status status, String message) {
+
+    public enum Status {
+        CREATED,
+        // already in the database or earlier in the same import, left as it is
+        EXISTS,
+        INVALID,
+        FAILED
+    }
+}
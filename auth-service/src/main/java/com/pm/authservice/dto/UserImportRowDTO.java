@@ -0,0 +1,4 @@
+package com.pm.authservice.dto;
+
+public record UserImportRowDTO(String email, String password, String role) {
+}
@@ -0,0 +1,40 @@
+package com.pm.authservice.exception;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@ControllerAdvice
+@Slf4j
+public class GlobalExceptionHandler {
+
+    @ExceptionHandler(LoginCapacityExceededException.class)
+    public ResponseEntity<Map<String,String>> handleLoginCapacityExceededException(LoginCapacityExceededException ex){
+
+        log.warn("Login rejected, password hashing saturated {}",ex.getMessage());
+        Map<String, String> errors = new HashMap<>();
+        errors.put("message","Too many logins in progress, try again shortly");
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(errors);
+    }
+
+    @ExceptionHandler(TooManyLoginAttemptsException.class)
+    public ResponseEntity<Map<String,String>> handleTooManyLoginAttemptsException(TooManyLoginAttemptsException ex){
+
+        log.warn("Login throttled {}",ex.getMessage());
+        Map<String, String> errors = new HashMap<>();
+        errors.put("message","Too many failed login attempts, try again later");
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(errors);
+    }
+}
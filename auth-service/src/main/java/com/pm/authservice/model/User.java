@@ -1,12 +1,14 @@
 package com.pm.authservice.model;
 
 
+import com.pm.authservice.service.UserChangeListener;
 import jakarta.persistence.*;
 
 import java.util.UUID;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(UserChangeListener.class)
 public class User {
 
     @Id
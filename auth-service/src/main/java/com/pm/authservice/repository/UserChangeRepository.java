@@ -0,0 +1,21 @@
+package com.pm.authservice.repository;
+
+import com.pm.authservice.model.UserChange;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface UserChangeRepository extends JpaRepository<UserChange, Long> {
+
+    @Query("select c.id from UserChange c where c.changedAt > :since")
+    List<Long> findIdsChangedAfter(Instant since);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UserChange c where c.changedAt < :before")
+    int deleteChangedBefore(Instant before);
+}
@@ -0,0 +1,7 @@
+package com.pm.authservice.repository;
+
+/**
+ * The columns a login needs, loaded without the rest of the user entity.
+ */
+public record UserCredentials(String email, String password, String role) {
+}
@@ -3,11 +3,13 @@ package com.pm.authservice.repository;
 import com.pm.authservice.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 
-import javax.swing.text.html.Option;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface UserRepository  extends JpaRepository<User, UUID> {
 
     Optional<User> findByEmail(String email);
+
+    // selects email, password and role only, nothing ends up in the persistence context
+    Optional<UserCredentials> findCredentialsByEmail(String email);
 }
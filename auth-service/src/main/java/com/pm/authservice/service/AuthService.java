@@ -3,9 +3,9 @@ package com.pm.authservice.service;
 
 import com.pm.authservice.dto.LoginRequestDTO;
 import com.pm.authservice.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
@@ -15,24 +15,49 @@ import java.util.Optional;
 public class AuthService {
 
     private final UserService userService;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordVerifier passwordVerifier;
+    private final LoginAttemptThrottle loginAttemptThrottle;
     private final JwtUtil jwtUtil;
+    private final TokenRevocationService tokenRevocationService;
 
-    public Optional<String> authenticate(LoginRequestDTO loginRequestDTO){
-        Optional<String> token =  userService
-                .findByEmail(loginRequestDTO.getEmail())
-                .filter(user -> passwordEncoder.matches(loginRequestDTO.getPassword(),user.getPassword()))
-                .map(user -> jwtUtil.generateToken(user.getEmail(), user.getRole()));
+    public Optional<String> authenticate(LoginRequestDTO loginRequestDTO, String clientIp){
+        loginAttemptThrottle.checkAllowed(loginRequestDTO.getEmail(), clientIp);
 
+        Optional<String> token =  userService
+                .findCredentials(loginRequestDTO.getEmail())
+                .filter(user -> passwordVerifier.matches(loginRequestDTO.getPassword(),user.password()))
+                .map(user -> jwtUtil.generateToken(user.email(), user.role()));
+
+        if (token.isPresent()) {
+            loginAttemptThrottle.recordSuccess(loginRequestDTO.getEmail());
+        } else {
+            loginAttemptThrottle.recordFailure(loginRequestDTO.getEmail(), clientIp);
+        }
         return token;
     }
 
     public boolean validateToken(String token){
+        return parseToken(token).isPresent();
+    }
+
+    /**
+     * @return the token's claims if it is correctly signed, unexpired and not revoked
+     */
+    public Optional<Claims> parseToken(String token){
         try{
-            jwtUtil.validateToken(token);
-            return true;
+            Claims claims = jwtUtil.parseClaims(token);
+            return tokenRevocationService.isRevoked(claims.getId()) ? Optional.empty() : Optional.of(claims);
         }catch (JwtException e){
-            return false;
+            return Optional.empty();
         }
     }
+
+    /**
+     * @return false if the token is not valid or carries no jti (issued before tokens had one)
+     */
+    public boolean revoke(String token){
+        Optional<Claims> claims = parseToken(token).filter(c -> c.getId() != null);
+        claims.ifPresent(c -> tokenRevocationService.revoke(c.getId(), c.getExpiration().toInstant()));
+        return claims.isPresent();
+    }
 }
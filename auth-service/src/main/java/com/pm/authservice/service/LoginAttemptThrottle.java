@@ -0,0 +1,81 @@
+package com.pm.authservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pm.authservice.exception.TooManyLoginAttemptsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts failed logins per email and per client IP over a fixed window and refuses further attempts once either
+ * limit is hit, before any BCrypt work is spent on them. A successful login clears the email's count; the IP
+ * count is left to expire so one good account can't be used to reset guessing against others.
+ */
+@Component
+public class LoginAttemptThrottle {
+
+    private final int maxFailuresPerEmail;
+    private final int maxFailuresPerIp;
+    private final Duration window;
+
+    private final Cache<String, AtomicInteger> failuresByEmail;
+    private final Cache<String, AtomicInteger> failuresByIp;
+    private final Counter throttled;
+
+    public LoginAttemptThrottle(@Value("${auth.login.throttle.max-failures-per-email:5}") int maxFailuresPerEmail,
+                                @Value("${auth.login.throttle.max-failures-per-ip:20}") int maxFailuresPerIp,
+                                @Value("${auth.login.throttle.window:15m}") Duration window,
+                                @Value("${auth.login.throttle.max-tracked-keys:100000}") long maxTrackedKeys,
+                                MeterRegistry meterRegistry){
+        this.maxFailuresPerEmail = maxFailuresPerEmail;
+        this.maxFailuresPerIp = maxFailuresPerIp;
+        this.window = window;
+        // the window starts at the first failure, later failures don't extend it
+        this.failuresByEmail = Caffeine.newBuilder().expireAfterWrite(window).maximumSize(maxTrackedKeys).build();
+        this.failuresByIp = Caffeine.newBuilder().expireAfterWrite(window).maximumSize(maxTrackedKeys).build();
+        this.throttled = Counter.builder("auth.login.rejected")
+                .description("Logins rejected before the password was checked")
+                .tag("reason", "throttled")
+                .register(meterRegistry);
+    }
+
+    public void checkAllowed(String email, String clientIp){
+        if (failures(failuresByEmail, key(email)) >= maxFailuresPerEmail) {
+            throttled.increment();
+            throw new TooManyLoginAttemptsException("Failed login limit per email reached for " + key(email), window);
+        }
+        if (failures(failuresByIp, clientIp) >= maxFailuresPerIp) {
+            throttled.increment();
+            throw new TooManyLoginAttemptsException("Failed login limit per client reached for " + clientIp, window);
+        }
+    }
+
+    public void recordFailure(String email, String clientIp){
+        failuresByEmail.get(key(email), k -> new AtomicInteger()).incrementAndGet();
+        if (clientIp != null) {
+            failuresByIp.get(clientIp, k -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    public void recordSuccess(String email){
+        failuresByEmail.invalidate(key(email));
+    }
+
+    private static int failures(Cache<String, AtomicInteger> failures, String key){
+        if (key == null) {
+            return 0;
+        }
+        AtomicInteger count = failures.getIfPresent(key);
+        return count == null ? 0 : count.get();
+    }
+
+    private static String key(String email){
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+}
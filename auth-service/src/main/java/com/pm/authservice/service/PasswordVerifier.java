@@ -0,0 +1,93 @@
+package com.pm.authservice.service;
+
+import com.pm.authservice.exception.LoginCapacityExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs BCrypt checks on a small pool of platform threads with a bounded queue. BCrypt is pure CPU: more threads
+ * than cores only makes every login slower, and on virtual threads a hash would hold its carrier and stall
+ * unrelated requests. By default the pool takes every core but one, so on multi-core hosts a login storm leaves a
+ * core for /validate and the other requests. A single-core task (256 CPU units) gets one hashing thread on the
+ * only core and has nothing to hold back; there the queue bound is what limits the damage. When the queue is full
+ * the login is rejected straight away with a 429 instead of waiting behind work that cannot finish in time.
+ */
+@Component
+public class PasswordVerifier {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+
+    private final Timer hashTimer;
+    private final Timer queueWaitTimer;
+    private final Counter rejections;
+
+    public PasswordVerifier(PasswordEncoder passwordEncoder,
+                            @Value("${auth.password-hashing.threads:0}") int threads,
+                            @Value("${auth.password-hashing.queue-capacity:16}") int queueCapacity,
+                            MeterRegistry meterRegistry){
+        this.passwordEncoder = passwordEncoder;
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hashing-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.hashTimer = Timer.builder("auth.password_hashing.duration")
+                .description("Time spent in BCrypt per login")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("auth.password_hashing.queue.wait")
+                .description("Time a login waited for a hashing thread")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejections = Counter.builder("auth.login.rejected")
+                .description("Logins rejected before the password was checked")
+                .tag("reason", "hashing_saturated")
+                .register(meterRegistry);
+        Gauge.builder("auth.password_hashing.queue.size", executor, pool -> pool.getQueue().size())
+                .description("Logins waiting for a hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("auth.password_hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Hashing threads busy")
+                .register(meterRegistry);
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword){
+        long submitted = System.nanoTime();
+        CompletableFuture<Boolean> result;
+        try {
+            result = CompletableFuture.supplyAsync(() -> {
+                queueWaitTimer.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                return hashTimer.record(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            throw new LoginCapacityExceededException("Password hashing queue is full");
+        }
+
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,90 @@
+package com.pm.authservice.service;
+
+import com.pm.authservice.dto.RevocationDTO;
+import com.pm.authservice.dto.RevocationFeedDTO;
+import com.pm.authservice.model.RevokedToken;
+import com.pm.authservice.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revoked token ids (jti) are stored until the token would have expired anyway. Each replica keeps the live ones
+ * in memory for /validate and picks up revocations made on other replicas every refresh interval, so validating
+ * never touches the database. The gateway follows the same rows through {@link #feed(Instant)}.
+ */
+@Service
+@Slf4j
+public class TokenRevocationService {
+
+    // rows commit a little after their revokedAt, re-reading this far back keeps slow commits from being skipped
+    static final Duration FEED_OVERLAP = Duration.ofSeconds(10);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+    private volatile Instant lastRefresh = Instant.EPOCH;
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository, MeterRegistry meterRegistry){
+        this.revokedTokenRepository = revokedTokenRepository;
+        Gauge.builder("auth.tokens.revoked", revoked, Map::size)
+                .description("Revoked tokens that have not expired yet")
+                .register(meterRegistry);
+    }
+
+    public void revoke(String jti, Instant expiresAt){
+        if (expiresAt.isBefore(Instant.now()) || revoked.containsKey(jti)) {
+            return;
+        }
+        RevokedToken revokedToken = new RevokedToken();
+        revokedToken.setJti(jti);
+        revokedToken.setExpiresAt(expiresAt);
+        revokedToken.setRevokedAt(Instant.now());
+        revokedTokenRepository.save(revokedToken);
+        revoked.put(jti, expiresAt);
+        log.info("Revoked token {} (expires {})", jti, expiresAt);
+    }
+
+    public boolean isRevoked(String jti){
+        return jti != null && revoked.containsKey(jti);
+    }
+
+    /**
+     * Revocations made after {@code since} whose tokens are still unexpired, all of them when since is null.
+     */
+    public RevocationFeedDTO feed(Instant since){
+        Instant now = Instant.now();
+        List<RevocationDTO> revocations = revokedTokenRepository
+                .findByRevokedAtAfterAndExpiresAtAfterOrderByRevokedAt(since == null ? Instant.EPOCH : since.minus(FEED_OVERLAP), now)
+                .stream()
+                .map(token -> new RevocationDTO(token.getJti(), token.getExpiresAt()))
+                .toList();
+        return new RevocationFeedDTO(revocations, now);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${auth.revocation.refresh-interval-ms:5000}", initialDelayString = "${auth.revocation.refresh-interval-ms:5000}")
+    public void refresh(){
+        RevocationFeedDTO changes = feed(lastRefresh == Instant.EPOCH ? null : lastRefresh);
+        changes.revocations().forEach(revocation -> revoked.put(revocation.jti(), revocation.expiresAt()));
+        revoked.values().removeIf(expiresAt -> expiresAt.isBefore(changes.asOf()));
+        lastRefresh = changes.asOf();
+    }
+
+    @Scheduled(fixedDelayString = "${auth.revocation.cleanup-interval-ms:3600000}")
+    public void deleteExpired(){
+        int deleted = revokedTokenRepository.deleteExpired(Instant.now());
+        if (deleted > 0) {
+            log.info("Deleted {} expired token revocations", deleted);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.pm.authservice.service;
+
+import com.pm.authservice.model.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Clears the credentials cached by {@link UserService} when a user entity is updated or deleted: right away on this
+ * instance, and through a {@code user_changes} row on every other one (see {@link UserService#refresh()}). New users
+ * need nothing, unknown emails are never cached.
+ */
+@Component
+public class UserChangeListener {
+
+    // looked up lazily, the listener is created along with the EntityManagerFactory that both depend on
+    private final ObjectProvider<UserService> userService;
+    private final ObjectProvider<JdbcTemplate> jdbcTemplate;
+
+    public UserChangeListener(ObjectProvider<UserService> userService, ObjectProvider<JdbcTemplate> jdbcTemplate) {
+        this.userService = userService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostUpdate
+    @PostRemove
+    void userChanged(User user){
+        // plain JDBC, the EntityManager is mid-flush here. It runs on the transaction's connection, so the row
+        // commits or rolls back with the change itself
+        jdbcTemplate.getObject().update("insert into user_changes (user_id, changed_at) values (?, ?)",
+                user.getId(), Timestamp.from(Instant.now()));
+
+        // after the commit, a login in between would otherwise cache the old row again
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit(){
+                    userService.getObject().evictAll();
+                }
+            });
+        } else {
+            userService.getObject().evictAll();
+        }
+    }
+}
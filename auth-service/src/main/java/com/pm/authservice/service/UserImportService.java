@@ -0,0 +1,258 @@
+package com.pm.authservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pm.authservice.dto.UserImportResultDTO;
+import com.pm.authservice.dto.UserImportResultDTO.Status;
+import com.pm.authservice.dto.UserImportRowDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Creates users from newline delimited JSON, one {@link UserImportRowDTO} per line, and writes one
+ * {@link UserImportResultDTO} line per input row as it goes. Rows are taken in batches: emails that already exist
+ * are skipped before any hashing, the passwords of the rest are BCrypt-hashed in parallel on a pool of platform
+ * threads, and the batch is inserted with one JDBC batch statement in one transaction. Results are flushed after
+ * every batch, so the caller sees progress on a long import and a dropped connection loses at most one batch.
+ */
+@Service
+@Slf4j
+public class UserImportService {
+
+    private static final String INSERT_USER = "INSERT INTO users (id, email, password, role) VALUES (?, ?, ?, ?)";
+    private static final Pattern EMAIL = Pattern.compile("[^@\\s]+@[^@\\s]+\\.[^@\\s]+");
+    private static final Pattern ROLE = Pattern.compile("[A-Z_]{1,50}");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final ExecutorService hashingPool;
+    private final Map<Status, Counter> rows = new EnumMap<>(Status.class);
+
+    public UserImportService(JdbcTemplate jdbcTemplate,
+                             NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             PasswordEncoder passwordEncoder,
+                             ObjectMapper objectMapper,
+                             @Value("${auth.user-import.batch-size:500}") int batchSize,
+                             @Value("${auth.user-import.hashing-threads:0}") int hashingThreads,
+                             MeterRegistry meterRegistry){
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        // separate from the login pool, whose queue is kept short on purpose. Platform threads for the same
+        // reason as there: a hash would hold a virtual thread's carrier for its whole duration. Half the cores by
+        // default, so an import running next to logins leaves them most of the CPU
+        int threads = hashingThreads > 0 ? hashingThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.hashingPool = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("user-import-hashing-", 0).factory());
+
+        for (Status status : Status.values()) {
+            rows.put(status, Counter.builder("auth.user_import.rows")
+                    .description("Rows processed by the bulk user import")
+                    .tag("result", status.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+    }
+
+    public void importUsers(InputStream ndjson, OutputStream results) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+        Writer writer = new OutputStreamWriter(results, StandardCharsets.UTF_8);
+        Set<String> seen = new HashSet<>();
+        List<Row> batch = new ArrayList<>(batchSize);
+
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            Row row = parse(lineNumber, line);
+            if (row.status == null && !seen.add(row.email)) {
+                row.finish(Status.EXISTS, "Appears earlier in this import");
+            }
+            if (row.status != null) {
+                write(writer, row);
+                continue;
+            }
+            batch.add(row);
+            if (batch.size() == batchSize) {
+                importBatch(batch, writer);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            importBatch(batch, writer);
+        }
+        writer.flush();
+    }
+
+    private Row parse(long lineNumber, String line){
+        UserImportRowDTO dto;
+        try {
+            dto = objectMapper.readValue(line, UserImportRowDTO.class);
+        } catch (JsonProcessingException e) {
+            return new Row(lineNumber, null, null, null).finish(Status.INVALID, "Not a JSON object with email, password and role");
+        }
+
+        String email = dto.email() == null ? null : dto.email().trim();
+        String role = dto.role() == null ? null : dto.role().trim().toUpperCase(Locale.ROOT);
+        Row row = new Row(lineNumber, email, dto.password(), role);
+        if (email == null || email.length() > 255 || !EMAIL.matcher(email).matches()) {
+            return row.finish(Status.INVALID, "Email is missing or not valid");
+        }
+        if (dto.password() == null || dto.password().length() < 8) {
+            return row.finish(Status.INVALID, "Password must be at least 8 characters long");
+        }
+        // BCrypt only uses the first 72 bytes, a longer password would silently match its own prefix
+        if (dto.password().getBytes(StandardCharsets.UTF_8).length > 72) {
+            return row.finish(Status.INVALID, "Password must be at most 72 bytes long");
+        }
+        if (role == null || !ROLE.matcher(role).matches()) {
+            return row.finish(Status.INVALID, "Role is missing or not valid");
+        }
+        return row;
+    }
+
+    private void importBatch(List<Row> batch, Writer writer) throws IOException {
+        Set<String> existing = existingEmails(batch);
+        List<Row> toInsert = new ArrayList<>(batch.size());
+        List<CompletableFuture<Void>> hashing = new ArrayList<>(batch.size());
+        for (Row row : batch) {
+            if (existing.contains(row.email)) {
+                row.finish(Status.EXISTS, null);
+                continue;
+            }
+            hashing.add(CompletableFuture.runAsync(() -> row.passwordHash = passwordEncoder.encode(row.password), hashingPool)
+                    .exceptionally(e -> {
+                        // only this row, the rest of the batch and the import go on
+                        log.warn("Bulk user import could not hash the password of line {}: {}", row.line, e.getMessage());
+                        row.finish(Status.FAILED, "Could not be saved");
+                        return null;
+                    }));
+            toInsert.add(row);
+        }
+        CompletableFuture.allOf(hashing.toArray(CompletableFuture[]::new)).join();
+        toInsert.removeIf(row -> row.status != null);
+
+        insert(toInsert);
+        for (Row row : batch) {
+            write(writer, row);
+        }
+        writer.flush();
+    }
+
+    private Set<String> existingEmails(List<Row> batch){
+        List<String> emails = batch.stream().map(row -> row.email).toList();
+        return new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                "SELECT email FROM users WHERE email IN (:emails)", Map.of("emails", emails), String.class));
+    }
+
+    private void insert(List<Row> toInsert){
+        if (toInsert.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_USER, toInsert, toInsert.size(), (ps, row) -> {
+                        ps.setObject(1, UUID.randomUUID());
+                        ps.setString(2, row.email);
+                        ps.setString(3, row.passwordHash);
+                        ps.setString(4, row.role);
+                    }));
+            toInsert.forEach(row -> row.finish(Status.CREATED, null));
+        } catch (DuplicateKeyException e) {
+            // someone created one of these users since existingEmails, the whole batch rolled back
+            insertOneByOne(toInsert);
+        } catch (DataAccessException e) {
+            log.warn("Bulk user import batch of {} failed: {}", toInsert.size(), e.getMessage());
+            toInsert.forEach(row -> row.finish(Status.FAILED, "Could not be saved"));
+        }
+    }
+
+    private void insertOneByOne(List<Row> toInsert){
+        for (Row row : toInsert) {
+            try {
+                jdbcTemplate.update(INSERT_USER, UUID.randomUUID(), row.email, row.passwordHash, row.role);
+                row.finish(Status.CREATED, null);
+            } catch (DuplicateKeyException e) {
+                row.finish(Status.EXISTS, null);
+            } catch (DataAccessException e) {
+                log.warn("Bulk user import of line {} failed: {}", row.line, e.getMessage());
+                row.finish(Status.FAILED, "Could not be saved");
+            }
+        }
+    }
+
+    private void write(Writer writer, Row row) throws IOException {
+        rows.get(row.status).increment();
+        writer.write(objectMapper.writeValueAsString(new UserImportResultDTO(row.line, row.email, row.status, row.message)));
+        writer.write('\n');
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        hashingPool.shutdown();
+    }
+
+    private static final class Row {
+        private final long line;
+        private final String email;
+        private final String password;
+        private final String role;
+        // written by a hashing thread, read after the join, as is the status of a row whose hashing failed
+        private String passwordHash;
+        private Status status;
+        private String message;
+
+        private Row(long line, String email, String password, String role) {
+            this.line = line;
+            this.email = email;
+            this.password = password;
+            this.role = role;
+        }
+
+        private Row finish(Status status, String message){
+            this.status = status;
+            this.message = message;
+            return this;
+        }
+    }
+}
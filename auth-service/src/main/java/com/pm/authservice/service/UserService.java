@@ -1,20 +1,115 @@
 package com.pm.authservice.service;
 
-import com.pm.authservice.dto.LoginRequestDTO;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.pm.authservice.model.User;
+import com.pm.authservice.repository.UserChangeRepository;
+import com.pm.authservice.repository.UserCredentials;
 import com.pm.authservice.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+/**
+ * User lookups. The credentials a login checks are cached by email, bounded and for {@code auth.user-cache.ttl},
+ * so repeat logins don't reach the database. A change to a user clears the cache on this instance right after the
+ * commit (see {@link UserChangeListener}), and on the others once they read its {@code user_changes} row, every
+ * {@code auth.user-cache.refresh-interval-ms}. Changes made around the user entity, e.g. by SQL, are only seen
+ * when the entries expire.
+ */
 @Service
-@RequiredArgsConstructor
 public class UserService {
 
+    // changes commit a little after their changedAt, re-reading this far back keeps slow commits from being skipped
+    static final Duration CHANGES_OVERLAP = Duration.ofSeconds(10);
+
     private final UserRepository userRepository;
+    private final UserChangeRepository userChangeRepository;
+    private final Duration ttl;
+    // async only so the query runs outside the map's bin lock, see PatientCache in patient-service
+    private final AsyncCache<String, UserCredentials> credentialsByEmail;
+
+    // only touched by refresh(), which the scheduler never runs concurrently
+    private Instant lastRefresh = Instant.now();
+    private Set<Long> seenChanges = Set.of();
+
+    public UserService(UserRepository userRepository,
+                       UserChangeRepository userChangeRepository,
+                       @Value("${auth.user-cache.max-size:10000}") long maxSize,
+                       @Value("${auth.user-cache.ttl:5m}") Duration ttl,
+                       MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.userChangeRepository = userChangeRepository;
+        this.ttl = ttl;
+        this.credentialsByEmail = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, credentialsByEmail, "userCredentials");
+    }
+
     public Optional<User> findByEmail(String email){
         Optional<User> user = userRepository.findByEmail(email);
         return user;
     }
+
+    public Optional<UserCredentials> findCredentials(String email){
+        if (email == null) {
+            return Optional.empty();
+        }
+        CompletableFuture<UserCredentials> loading = new CompletableFuture<>();
+        CompletableFuture<UserCredentials> credentials = credentialsByEmail.get(email, (key, executor) -> loading);
+
+        // the first caller queries on its own thread, concurrent logins for the same email wait for it.
+        // Unknown emails are not cached
+        if (credentials == loading) {
+            try {
+                loading.complete(userRepository.findCredentialsByEmail(email).orElse(null));
+            } catch (RuntimeException e) {
+                loading.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return Optional.ofNullable(credentials.join());
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    public void evictAll(){
+        credentialsByEmail.synchronous().invalidateAll();
+    }
+
+    /**
+     * Clears the cache if a user changed on any instance since the last refresh. Changes seen last time are
+     * re-read for a while and don't clear it again.
+     */
+    @Scheduled(fixedDelayString = "${auth.user-cache.refresh-interval-ms:5000}", initialDelayString = "${auth.user-cache.refresh-interval-ms:5000}")
+    public void refresh(){
+        Instant now = Instant.now();
+        List<Long> changes = userChangeRepository.findIdsChangedAfter(lastRefresh.minus(CHANGES_OVERLAP));
+        if (!seenChanges.containsAll(changes)) {
+            evictAll();
+        }
+        seenChanges = Set.copyOf(changes);
+        lastRefresh = now;
+    }
+
+    // once older than the ttl, no instance can still have an entry cached from before the change
+    @Scheduled(fixedDelayString = "${auth.user-cache.cleanup-interval-ms:3600000}")
+    public void deleteOldChanges(){
+        userChangeRepository.deleteChangedBefore(Instant.now().minus(ttl).minus(CHANGES_OVERLAP));
+    }
 }
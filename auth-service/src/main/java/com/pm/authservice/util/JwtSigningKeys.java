@@ -0,0 +1,101 @@
+package com.pm.authservice.util;
+
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.PublicJwk;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The RSA key tokens are signed with (RS256), plus every public key a still valid token may have been signed with.
+ * RSA over EC because the gateway verifies on every request and auth-service only signs on login: an RS256
+ * check is several times cheaper than an ES256 one, the more expensive signature is paid once per login.
+ * Keys are base64 DER: PKCS#8 for the private key, X.509 for public keys.
+ * <p>
+ * Rotating: deploy the new pair under a new key id and move the old public key to
+ * {@code jwt.signing.retired-public-keys} ({@code kid:base64}, comma separated) until the last token it signed
+ * has expired. Both are published on the JWKS endpoint, so the gateway picks up the new key on the first token
+ * carrying its id.
+ */
+@Component
+@Slf4j
+public class JwtSigningKeys {
+
+    private final String activeKeyId;
+    private final PrivateKey signingKey;
+    private final Map<String, PublicKey> verificationKeys = new LinkedHashMap<>();
+
+    public JwtSigningKeys(@Value("${jwt.signing.key-id:}") String keyId,
+                          @Value("${jwt.signing.private-key:}") String privateKey,
+                          @Value("${jwt.signing.public-key:}") String publicKey,
+                          @Value("${jwt.signing.retired-public-keys:}") List<String> retiredPublicKeys){
+        try {
+            if (privateKey.isBlank()) {
+                // fine for a single local instance, replicas would each sign with a different key
+                KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+                generator.initialize(2048);
+                KeyPair keyPair = generator.generateKeyPair();
+
+                this.activeKeyId = UUID.randomUUID().toString();
+                this.signingKey = keyPair.getPrivate();
+                verificationKeys.put(activeKeyId, keyPair.getPublic());
+                log.warn("No jwt.signing.private-key configured, signing with a generated key {} that changes on restart", activeKeyId);
+            } else {
+                KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+                this.activeKeyId = keyId;
+                this.signingKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privateKey.trim())));
+                verificationKeys.put(activeKeyId, keyFactory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(publicKey.trim()))));
+            }
+
+            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+            for (String retired : retiredPublicKeys) {
+                if (retired.isBlank()) {
+                    continue;
+                }
+                String[] idAndKey = retired.trim().split(":", 2);
+                verificationKeys.put(idAndKey[0], keyFactory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(idAndKey[1]))));
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalStateException("Invalid JWT signing key configuration", e);
+        }
+    }
+
+    public String getActiveKeyId(){
+        return activeKeyId;
+    }
+
+    public PrivateKey getSigningKey(){
+        return signingKey;
+    }
+
+    public PublicKey findVerificationKey(String keyId){
+        return keyId == null ? null : verificationKeys.get(keyId);
+    }
+
+    public List<PublicJwk<?>> getPublicJwks(){
+        return verificationKeys.entrySet()
+                .stream()
+                .<PublicJwk<?>>map(entry -> Jwks.builder()
+                        .key((RSAPublicKey) entry.getValue())
+                        .id(entry.getKey())
+                        .publicKeyUse("sig")
+                        .algorithm("RS256")
+                        .build())
+                .toList();
+    }
+}
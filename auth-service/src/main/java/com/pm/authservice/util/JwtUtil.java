@@ -1,47 +1,62 @@
 package com.pm.authservice.util;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
-import org.springframework.beans.factory.annotation.Value;
+import io.jsonwebtoken.LocatorAdapter;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
 import java.security.Key;
-import java.security.SignatureException;
-import java.util.Base64;
+import java.security.PublicKey;
 import java.util.Date;
+import java.util.UUID;
 
 @Component
 public class JwtUtil {
 
-    private final Key secretKey;
+    private final JwtSigningKeys signingKeys;
+    // parsers are immutable and thread safe, building one per call cost more than the signature check
+    private final JwtParser parser;
 
-    public JwtUtil(@Value("${jwt.secret}") String secret){
-        byte[] keyBytes = Base64.getDecoder()
-                .decode(secret.getBytes(StandardCharsets.UTF_8));
-
-        this.secretKey = Keys.hmacShaKeyFor(keyBytes);
+    public JwtUtil(JwtSigningKeys signingKeys){
+        this.signingKeys = signingKeys;
+        this.parser = Jwts.parser()
+                .keyLocator(new LocatorAdapter<Key>() {
+                    @Override
+                    protected Key locate(JwsHeader header) {
+                        PublicKey key = signingKeys.findVerificationKey(header.getKeyId());
+                        if (key == null) {
+                            throw new JwtException("Unknown signing key " + header.getKeyId());
+                        }
+                        return key;
+                    }
+                })
+                .build();
     }
 
     public String generateToken(String email,String role){
         return Jwts.builder()
+                .header().keyId(signingKeys.getActiveKeyId()).and() // lets verifiers pick the right public key from the JWKS
+                .id(UUID.randomUUID().toString()) // jti, what a revocation refers to
                 .subject(email) //used to store an id that relates toa person who login
                 .claim("role",role) // its a custom property that wer can add to jwt
                 .issuedAt(new Date()) // used to determine if the token is valid or not
                 .expiration(new Date(System.currentTimeMillis()+1000*60*60*10)) // 10 hours
-                .signWith(secretKey) // means encode this token with secret key
+                .signWith(signingKeys.getSigningKey(), Jwts.SIG.RS256) // RS256, anyone with the public key can verify, only we can sign
                 .compact(); // squash everything into a single string
     }
 
 
     public void validateToken(String token){
+        parseClaims(token);
+    }
+
+    public Claims parseClaims(String token){
         try{
-            Jwts.parser().verifyWith((SecretKey) secretKey)
-                    .build()
-                    .parseSignedClaims(token);
-        } catch (JwtException e){
+            return parser.parseSignedClaims(token).getPayload();
+        } catch (JwtException | IllegalArgumentException e){
             throw new JwtException("Invalid JWT");
         }
     }
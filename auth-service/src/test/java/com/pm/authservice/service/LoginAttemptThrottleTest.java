@@ -0,0 +1,60 @@
+package com.pm.authservice.service;
+
+import com.pm.authservice.exception.TooManyLoginAttemptsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginAttemptThrottleTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LoginAttemptThrottle throttle = new LoginAttemptThrottle(3, 5, Duration.ofMinutes(15), 1_000, meterRegistry);
+
+    @Test
+    void emailLimitAppliesFromEveryClient() {
+        for (int i = 0; i < 3; i++) {
+            throttle.recordFailure("John@Example.com", "10.0.0." + i);
+        }
+
+        TooManyLoginAttemptsException e = assertThrows(TooManyLoginAttemptsException.class,
+                () -> throttle.checkAllowed("john@example.com ", "10.0.0.99"));
+        assertTrue(e.getMessage().contains("per email"), e.getMessage());
+        assertEquals(Duration.ofMinutes(15), e.getRetryAfter());
+        assertDoesNotThrow(() -> throttle.checkAllowed("jane@example.com", "10.0.0.99"));
+        assertEquals(1.0, meterRegistry.get("auth.login.rejected").counter().count());
+    }
+
+    @Test
+    void clientLimitAppliesToEveryEmail() {
+        for (int i = 0; i < 5; i++) {
+            throttle.recordFailure("user" + i + "@example.com", "10.0.0.1");
+        }
+
+        TooManyLoginAttemptsException e = assertThrows(TooManyLoginAttemptsException.class,
+                () -> throttle.checkAllowed("someone.else@example.com", "10.0.0.1"));
+        assertTrue(e.getMessage().contains("per client") && e.getMessage().contains("10.0.0.1"), e.getMessage());
+        assertDoesNotThrow(() -> throttle.checkAllowed("someone.else@example.com", "10.0.0.2"));
+    }
+
+    @Test
+    void successfulLoginClearsTheEmailCountButNotTheClientCount() {
+        for (int i = 0; i < 3; i++) {
+            throttle.recordFailure("john@example.com", "10.0.0.1");
+        }
+        throttle.recordSuccess("john@example.com");
+        assertDoesNotThrow(() -> throttle.checkAllowed("john@example.com", "10.0.0.1"));
+
+        // two more from the same client reach its limit, the reset above didn't clear it
+        throttle.recordFailure("jane@example.com", "10.0.0.1");
+        throttle.recordFailure("jane@example.com", "10.0.0.1");
+        TooManyLoginAttemptsException e = assertThrows(TooManyLoginAttemptsException.class,
+                () -> throttle.checkAllowed("john@example.com", "10.0.0.1"));
+        assertTrue(e.getMessage().contains("per client"), e.getMessage());
+    }
+}
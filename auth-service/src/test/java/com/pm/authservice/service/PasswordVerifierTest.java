@@ -0,0 +1,65 @@
+package com.pm.authservice.service;
+
+import com.pm.authservice.exception.LoginCapacityExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PasswordVerifierTest {
+
+    private final PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch hashing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final PasswordVerifier verifier = new PasswordVerifier(passwordEncoder, 1, 1, meterRegistry);
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        verifier.shutdown();
+    }
+
+    @Test
+    void rejectsWithoutWaitingOnceThreadAndQueueAreTaken() throws Exception {
+        when(passwordEncoder.matches(any(), any())).thenAnswer(invocation -> {
+            hashing.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        });
+
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> verifier.matches("a", "hash"));
+        assertTrue(hashing.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> verifier.matches("b", "hash"));
+        // the queued login is in once the gauge sees it
+        while (meterRegistry.get("auth.password_hashing.queue.size").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(LoginCapacityExceededException.class, () -> verifier.matches("c", "hash"));
+        assertEquals(1.0, meterRegistry.get("auth.login.rejected").tag("reason", "hashing_saturated").counter().count());
+
+        release.countDown();
+        assertTrue(running.get(10, TimeUnit.SECONDS));
+        assertTrue(queued.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void returnsTheEncodersAnswer() {
+        when(passwordEncoder.matches("right", "hash")).thenReturn(true);
+
+        assertTrue(verifier.matches("right", "hash"));
+        assertFalse(verifier.matches("wrong", "hash"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.pm.authservice.service;
+
+import com.pm.authservice.model.User;
+import com.pm.authservice.model.UserChange;
+import com.pm.authservice.repository.UserChangeRepository;
+import com.pm.authservice.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+// not transactional itself, the eviction runs after the commit
+@DataJpaTest
+@Import(UserChangeListener.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserChangeListenerTest {
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserChangeRepository userChangeRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @MockitoBean
+    private UserService userService;
+
+    @Test
+    void updateIsRecordedForTheOtherInstancesAndClearsThisOne() {
+        User user = transactionTemplate.execute(status -> userRepository.save(user("john@example.com")));
+        verify(userService, never()).evictAll();
+        assertEquals(List.of(), changesOf(user.getId()));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            User saved = userRepository.findById(user.getId()).orElseThrow();
+            saved.setRole("ADMIN");
+        });
+
+        verify(userService).evictAll();
+        assertEquals(1, changesOf(user.getId()).size());
+        assertTrue(userChangeRepository.findIdsChangedAfter(Instant.now().minusSeconds(60))
+                .contains(changesOf(user.getId()).getFirst().getId()));
+    }
+
+    @Test
+    void rolledBackChangeIsNotRecorded() {
+        User user = transactionTemplate.execute(status -> userRepository.save(user("jane@example.com")));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            userRepository.delete(userRepository.findById(user.getId()).orElseThrow());
+            userRepository.flush();
+            status.setRollbackOnly();
+        });
+
+        verify(userService, never()).evictAll();
+        assertEquals(List.of(), changesOf(user.getId()));
+    }
+
+    private List<UserChange> changesOf(UUID userId) {
+        return userChangeRepository.findAll().stream()
+                .filter(change -> change.getUserId().equals(userId))
+                .toList();
+    }
+
+    private static User user(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("hash");
+        user.setRole("USER");
+        return user;
+    }
+}
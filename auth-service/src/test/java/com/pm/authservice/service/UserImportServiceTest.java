@@ -0,0 +1,125 @@
+package com.pm.authservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pm.authservice.dto.UserImportResultDTO;
+import com.pm.authservice.dto.UserImportResultDTO.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserImportServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+    private final PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UserImportService importService = new UserImportService(jdbcTemplate, namedParameterJdbcTemplate,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), passwordEncoder, objectMapper, 2, 2,
+            new SimpleMeterRegistry());
+
+    @AfterEach
+    void shutdown() {
+        importService.shutdown();
+    }
+
+    @Test
+    void everyLineGetsAResult() throws IOException {
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> "hash:" + invocation.getArgument(0));
+        when(namedParameterJdbcTemplate.queryForList(anyString(), anyMap(), eq(String.class)))
+                .thenReturn(List.of("taken@example.com"));
+
+        List<UserImportResultDTO> results = importUsers("""
+                {"email":"john@example.com","password":"password1","role":"user"}
+                not json
+
+                {"email":"no-at-sign","password":"password1","role":"USER"}
+                {"email":"jane@example.com","password":"short","role":"USER"}
+                {"email":"taken@example.com","password":"password1","role":"USER"}
+                {"email":"john@example.com","password":"password2","role":"USER"}
+                {"email":"anna@example.com","password":"password1","role":"ADMIN"}
+                """);
+
+        // rows that fail parsing are answered right away, the rest once their batch of two is done
+        assertEquals(List.of(
+                new UserImportResultDTO(2, null, Status.INVALID, "Not a JSON object with email, password and role"),
+                new UserImportResultDTO(4, "no-at-sign", Status.INVALID, "Email is missing or not valid"),
+                new UserImportResultDTO(5, "jane@example.com", Status.INVALID, "Password must be at least 8 characters long"),
+                new UserImportResultDTO(1, "john@example.com", Status.CREATED, null),
+                new UserImportResultDTO(6, "taken@example.com", Status.EXISTS, null),
+                new UserImportResultDTO(7, "john@example.com", Status.EXISTS, "Appears earlier in this import"),
+                new UserImportResultDTO(8, "anna@example.com", Status.CREATED, null)), results);
+    }
+
+    @Test
+    void batchHittingADuplicateFallsBackToOneInsertPerRow() throws IOException {
+        when(passwordEncoder.encode(anyString())).thenReturn("hash");
+        when(namedParameterJdbcTemplate.queryForList(anyString(), anyMap(), eq(String.class))).thenReturn(List.of());
+        // created by someone else after the existence check
+        when(jdbcTemplate.batchUpdate(anyString(), any(), anyInt(), any())).thenThrow(new DuplicateKeyException("users_email_key"));
+        when(jdbcTemplate.update(anyString(), any(), eq("john@example.com"), any(), any())).thenReturn(1);
+        when(jdbcTemplate.update(anyString(), any(), eq("jane@example.com"), any(), any()))
+                .thenThrow(new DuplicateKeyException("users_email_key"));
+
+        List<UserImportResultDTO> results = importUsers("""
+                {"email":"john@example.com","password":"password1","role":"USER"}
+                {"email":"jane@example.com","password":"password1","role":"USER"}
+                """);
+
+        assertEquals(List.of(Status.CREATED, Status.EXISTS), results.stream().map(UserImportResultDTO::status).toList());
+    }
+
+    @Test
+    void hashingFailureOnlyFailsItsOwnRow() throws IOException {
+        when(passwordEncoder.encode(anyString())).thenReturn("hash");
+        when(passwordEncoder.encode("password2")).thenThrow(new IllegalStateException("boom"));
+        when(namedParameterJdbcTemplate.queryForList(anyString(), anyMap(), eq(String.class))).thenReturn(List.of());
+        List<String> inserted = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), any(), anyInt(), any())).thenAnswer(invocation -> {
+            List<?> rows = invocation.getArgument(1);
+            inserted.add(rows.size() + " rows");
+            return new int[][]{};
+        });
+
+        List<UserImportResultDTO> results = importUsers("""
+                {"email":"john@example.com","password":"password1","role":"USER"}
+                {"email":"jane@example.com","password":"password2","role":"USER"}
+                {"email":"anna@example.com","password":"password3","role":"USER"}
+                """);
+
+        assertEquals(List.of(Status.CREATED, Status.FAILED, Status.CREATED),
+                results.stream().map(UserImportResultDTO::status).toList());
+        assertEquals(List.of("1 rows", "1 rows"), inserted);
+    }
+
+    private List<UserImportResultDTO> importUsers(String ndjson) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        importService.importUsers(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), out);
+        List<UserImportResultDTO> results = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            results.add(objectMapper.readValue(line, UserImportResultDTO.class));
+        }
+        return results;
+    }
+}
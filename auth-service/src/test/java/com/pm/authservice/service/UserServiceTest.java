@@ -0,0 +1,87 @@
+package com.pm.authservice.service;
+
+import com.pm.authservice.repository.UserChangeRepository;
+import com.pm.authservice.repository.UserCredentials;
+import com.pm.authservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserServiceTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserChangeRepository userChangeRepository = mock(UserChangeRepository.class);
+    private final UserService userService = new UserService(userRepository, userChangeRepository, 100,
+            Duration.ofMinutes(5), new SimpleMeterRegistry());
+
+    private final UserCredentials john = new UserCredentials("john@example.com", "hash", "USER");
+
+    @BeforeEach
+    void setUp() {
+        when(userRepository.findCredentialsByEmail("john@example.com")).thenReturn(Optional.of(john));
+    }
+
+    @Test
+    void repeatLoginsAreAnsweredFromTheCache() {
+        assertEquals(john, userService.findCredentials("john@example.com").orElseThrow());
+        assertEquals(john, userService.findCredentials("john@example.com").orElseThrow());
+
+        verify(userRepository, times(1)).findCredentialsByEmail("john@example.com");
+    }
+
+    @Test
+    void unknownEmailsAreNotCached() {
+        assertTrue(userService.findCredentials("nobody@example.com").isEmpty());
+        assertTrue(userService.findCredentials("nobody@example.com").isEmpty());
+
+        verify(userRepository, times(2)).findCredentialsByEmail("nobody@example.com");
+    }
+
+    @Test
+    void evictAllReloadsFromTheDatabase() {
+        userService.findCredentials("john@example.com");
+        userService.evictAll();
+        userService.findCredentials("john@example.com");
+
+        verify(userRepository, times(2)).findCredentialsByEmail("john@example.com");
+    }
+
+    @Test
+    void changeOnAnotherInstanceClearsTheCacheOnce() {
+        userService.findCredentials("john@example.com");
+
+        // another replica changed a user
+        when(userChangeRepository.findIdsChangedAfter(any())).thenReturn(List.of(7L));
+        userService.refresh();
+        userService.findCredentials("john@example.com");
+        verify(userRepository, times(2)).findCredentialsByEmail("john@example.com");
+
+        // the same change is read again within the overlap, the cache stays
+        userService.refresh();
+        userService.findCredentials("john@example.com");
+        verify(userRepository, times(2)).findCredentialsByEmail("john@example.com");
+    }
+
+    @Test
+    void noChangesKeepTheCache() {
+        when(userChangeRepository.findIdsChangedAfter(any())).thenReturn(List.of());
+        userService.findCredentials("john@example.com");
+
+        userService.refresh();
+        userService.findCredentials("john@example.com");
+
+        verify(userRepository, times(1)).findCredentialsByEmail("john@example.com");
+    }
+}
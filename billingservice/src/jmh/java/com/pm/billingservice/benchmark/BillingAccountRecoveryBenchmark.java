@@ -0,0 +1,66 @@
+package com.pm.billingservice.benchmark;
+
+import com.pm.billingservice.account.BillingAccountStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup with {@code ACCOUNTS} accounts on disk, either all of them in the journal or in a snapshot with the last
+ * {@code TAIL} created after it left to replay from the journal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BillingAccountRecoveryBenchmark {
+
+    private static final int ACCOUNTS = 500_000;
+    private static final int TAIL = 1_000;
+    private static final DataSize SEGMENT_SIZE = DataSize.ofMegabytes(64);
+
+    public enum RecoverFrom { JOURNAL, SNAPSHOT }
+
+    @Param({"JOURNAL", "SNAPSHOT"})
+    private RecoverFrom recoverFrom;
+
+    private Path directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("billing-accounts-benchmark");
+        BillingAccountStore store = new BillingAccountStore(directory, SEGMENT_SIZE, false);
+        for (int i = 0; i < ACCOUNTS - TAIL; i++) {
+            store.getOrCreate(UUID.randomUUID().toString());
+        }
+        if (recoverFrom == RecoverFrom.SNAPSHOT) {
+            store.snapshot();
+        }
+        for (int i = 0; i < TAIL; i++) {
+            store.getOrCreate(UUID.randomUUID().toString());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public BillingAccountStore recover() throws IOException {
+        return new BillingAccountStore(directory, SEGMENT_SIZE, false);
+    }
+}
@@ -0,0 +1,94 @@
+package com.pm.billingservice.benchmark;
+
+import com.pm.billingservice.account.BillingAccount;
+import com.pm.billingservice.account.BillingAccountStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Requests per second the store handles. {@code lookup} is a patient that already has an account, which is what a
+ * retried or repeated request costs; {@code create} journals a new account, with and without an fsync per append.
+ * Every iteration of create starts from an empty directory so the map doesn't keep growing over the run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BillingAccountStoreBenchmark {
+
+    private static final DataSize SEGMENT_SIZE = DataSize.ofMegabytes(64);
+
+    @State(Scope.Benchmark)
+    public static class ExistingAccounts {
+
+        private static final int ACCOUNTS = 100_000;
+
+        private Path directory;
+        private BillingAccountStore store;
+        private String[] patientIds;
+
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("billing-accounts-benchmark");
+            store = new BillingAccountStore(directory, SEGMENT_SIZE, false);
+            patientIds = new String[ACCOUNTS];
+            for (int i = 0; i < ACCOUNTS; i++) {
+                patientIds[i] = UUID.randomUUID().toString();
+                store.getOrCreate(patientIds[i]);
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class NewAccounts {
+
+        @Param({"false", "true"})
+        private boolean forceOnAppend;
+
+        private Path directory;
+        private BillingAccountStore store;
+        private final AtomicLong patients = new AtomicLong();
+
+        @Setup(Level.Iteration)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("billing-accounts-benchmark");
+            store = new BillingAccountStore(directory, SEGMENT_SIZE, forceOnAppend);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    @Benchmark
+    public BillingAccount lookup(ExistingAccounts accounts){
+        return accounts.store.getOrCreate(accounts.patientIds[ThreadLocalRandom.current().nextInt(accounts.patientIds.length)]);
+    }
+
+    @Benchmark
+    public BillingAccount create(NewAccounts accounts){
+        return accounts.store.getOrCreate("patient-" + accounts.patients.incrementAndGet());
+    }
+}
@@ -0,0 +1,6 @@
+package com.pm.billingservice.account;
+
+import java.time.Instant;
+
+public record BillingAccount(String accountId, String patientId, Instant createdAt) {
+}
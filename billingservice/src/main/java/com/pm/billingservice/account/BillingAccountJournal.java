@@ -0,0 +1,208 @@
+package com.pm.billingservice.account;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of created accounts in fixed size, memory-mapped segment files named after the sequence of their
+ * first record. An append is a copy into the page cache, so it survives the process dying but not the machine unless
+ * forceOnAppend is set. A record is [length][crc32c][sequence, createdAt, accountId, patientId]; a zero length or a
+ * checksum that doesn't match ends the log, which is what an append cut short by a crash leaves behind.
+ * Not thread-safe, {@link BillingAccountStore} appends under its own lock.
+ */
+@Slf4j
+class BillingAccountJournal implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+    // sequence, createdAt, accountId, patientId length
+    private static final int FIXED_BODY_BYTES = 8 + 8 + 16 + 2;
+    private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean forceOnAppend;
+    private MappedByteBuffer segment;
+    private long lastSequence;
+
+    /**
+     * Opens the journal in {@code directory}, handing every record after {@code afterSequence} to {@code replay}.
+     * Segments holding nothing after it are not read at all.
+     */
+    BillingAccountJournal(Path directory, int segmentSize, boolean forceOnAppend,
+                          long afterSequence, Consumer<BillingAccount> replay) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Journal segments must be at least " + MIN_SEGMENT_SIZE + " bytes");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.forceOnAppend = forceOnAppend;
+        this.lastSequence = afterSequence;
+
+        Files.createDirectories(directory);
+        List<Segment> segments = segments();
+        for (int i = 0; i < segments.size(); i++) {
+            boolean last = i == segments.size() - 1;
+            if (!last && segments.get(i + 1).firstSequence() <= afterSequence + 1) {
+                continue;
+            }
+            MappedByteBuffer buffer = map(segments.get(i).path());
+            replay(buffer, segments.get(i).path(), last, afterSequence, replay);
+            if (last) {
+                segment = buffer;
+            }
+        }
+        if (segment == null) {
+            roll(lastSequence + 1);
+        }
+    }
+
+    long append(BillingAccount account) throws IOException {
+        byte[] patientId = account.patientId().getBytes(StandardCharsets.UTF_8);
+        if (patientId.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("patientId is too long for the journal");
+        }
+        int bodyLength = FIXED_BODY_BYTES + patientId.length;
+        if (segment.remaining() < HEADER_BYTES + bodyLength) {
+            roll(lastSequence + 1);
+        }
+
+        long sequence = lastSequence + 1;
+        UUID accountId = UUID.fromString(account.accountId());
+        int start = segment.position();
+        segment.position(start + HEADER_BYTES)
+                .putLong(sequence)
+                .putLong(account.createdAt().toEpochMilli())
+                .putLong(accountId.getMostSignificantBits())
+                .putLong(accountId.getLeastSignificantBits())
+                .putShort((short) patientId.length)
+                .put(patientId);
+        segment.putInt(start + 4, checksum(segment, start + HEADER_BYTES, bodyLength));
+        // the length goes in last, until then the record reads as the end of the log
+        segment.putInt(start, bodyLength);
+        if (forceOnAppend) {
+            segment.force(start, HEADER_BYTES + bodyLength);
+        }
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    long lastSequence(){
+        return lastSequence;
+    }
+
+    /**
+     * Deletes the segments holding nothing after {@code sequence}, once a snapshot covers them. The segment being
+     * appended to is always kept.
+     */
+    void deleteSegmentsUpTo(long sequence) throws IOException {
+        List<Segment> segments = segments();
+        for (int i = 0; i < segments.size() - 1; i++) {
+            if (segments.get(i + 1).firstSequence() <= sequence + 1) {
+                Files.deleteIfExists(segments.get(i).path());
+            }
+        }
+    }
+
+    @Override
+    public void close(){
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+
+    private void replay(MappedByteBuffer buffer, Path path, boolean last, long afterSequence,
+                        Consumer<BillingAccount> replay){
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length == 0) {
+                return;
+            }
+            if (length < FIXED_BODY_BYTES || length > buffer.remaining() - HEADER_BYTES
+                    || checksum(buffer, start + HEADER_BYTES, length) != buffer.getInt(start + 4)) {
+                if (!last) {
+                    throw new IllegalStateException("Corrupt billing account journal " + path + " at offset " + start);
+                }
+                log.warn("Dropping the incomplete record at offset {} of {}, the end of the journal", start, path);
+                // so the next append starts from a clean tail
+                while (buffer.hasRemaining()) {
+                    buffer.put((byte) 0);
+                }
+                buffer.position(start);
+                return;
+            }
+
+            buffer.position(start + HEADER_BYTES);
+            long sequence = buffer.getLong();
+            Instant createdAt = Instant.ofEpochMilli(buffer.getLong());
+            UUID accountId = new UUID(buffer.getLong(), buffer.getLong());
+            byte[] patientId = new byte[buffer.getShort()];
+            buffer.get(patientId);
+
+            lastSequence = Math.max(lastSequence, sequence);
+            if (sequence > afterSequence) {
+                replay.accept(new BillingAccount(accountId.toString(), new String(patientId, StandardCharsets.UTF_8), createdAt));
+            }
+        }
+    }
+
+    private void roll(long firstSequence) throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+        Path path = directory.resolve(SEGMENT_PREFIX + "%020d".formatted(firstSequence) + SEGMENT_SUFFIX);
+        segment = map(path);
+        log.debug("Started billing account journal segment {}", path);
+    }
+
+    // the mapping stays valid after the channel is closed
+    private MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentSize));
+        }
+    }
+
+    private List<Segment> segments() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    long firstSequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    segments.add(new Segment(firstSequence, path));
+                }
+            });
+        }
+        segments.sort(Comparator.comparingLong(Segment::firstSequence));
+        return segments;
+    }
+
+    private static int checksum(MappedByteBuffer buffer, int offset, int length){
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private record Segment(long firstSequence, Path path) {
+    }
+}
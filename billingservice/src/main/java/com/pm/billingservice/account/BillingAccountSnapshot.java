@@ -0,0 +1,85 @@
+package com.pm.billingservice.account;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Every account up to a journal sequence in one file, so a restart only replays the journal after it. Written to a
+ * temporary file that replaces the previous snapshot once it is on disk, so there is always one complete snapshot.
+ */
+final class BillingAccountSnapshot {
+
+    private static final int MAGIC = 0x42414353;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private BillingAccountSnapshot() {
+    }
+
+    static void write(Path file, long sequence, Iterable<BillingAccount> accounts) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                     new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), crc))) {
+            out.writeInt(MAGIC);
+            out.writeLong(sequence);
+            for (BillingAccount account : accounts) {
+                UUID accountId = UUID.fromString(account.accountId());
+                out.writeBoolean(true);
+                out.writeLong(accountId.getMostSignificantBits());
+                out.writeLong(accountId.getLeastSignificantBits());
+                out.writeLong(account.createdAt().toEpochMilli());
+                out.writeUTF(account.patientId());
+            }
+            out.writeBoolean(false);
+            out.writeLong(crc.getValue());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Hands every account in the snapshot to {@code restore} and returns the journal sequence it covers, 0 when
+     * there is no snapshot yet.
+     */
+    static long read(Path file, Consumer<BillingAccount> restore) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        CRC32C crc = new CRC32C();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE), crc))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a billing account snapshot");
+            }
+            long sequence = in.readLong();
+            while (in.readBoolean()) {
+                UUID accountId = new UUID(in.readLong(), in.readLong());
+                Instant createdAt = Instant.ofEpochMilli(in.readLong());
+                restore.accept(new BillingAccount(accountId.toString(), in.readUTF(), createdAt));
+            }
+            long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Billing account snapshot " + file + " is corrupt");
+            }
+            return sequence;
+        }
+    }
+}
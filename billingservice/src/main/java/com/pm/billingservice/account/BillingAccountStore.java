@@ -0,0 +1,144 @@
+package com.pm.billingservice.account;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One billing account per patient. Lookups only read the in-memory map; creating an account appends it to the
+ * journal first, so an account handed out is never lost or replaced on restart. A periodic snapshot of the map lets
+ * the journal before it be deleted, startup loads the snapshot and replays whatever was appended since.
+ */
+@Component
+@Slf4j
+public class BillingAccountStore {
+
+    public static final int MAX_PATIENT_ID_LENGTH = 128;
+
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private final ConcurrentMap<String, BillingAccount> accounts = new ConcurrentHashMap<>();
+    // single writer: the journal append and the map insert happen together, so everything up to
+    // journal.lastSequence() is in the map whenever the lock is free
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final Path snapshotFile;
+    private final BillingAccountJournal journal;
+    private volatile long snapshotSequence;
+
+    public BillingAccountStore(@Value("${billing.accounts.data-dir:data/billing-accounts}") Path directory,
+                               @Value("${billing.accounts.journal.segment-size:64MB}") DataSize segmentSize,
+                               @Value("${billing.accounts.journal.force-on-append:false}") boolean forceOnAppend) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        snapshotSequence = BillingAccountSnapshot.read(snapshotFile, this::restore);
+        int fromSnapshot = accounts.size();
+        journal = new BillingAccountJournal(directory, Math.toIntExact(segmentSize.toBytes()), forceOnAppend,
+                snapshotSequence, this::restore);
+
+        log.info("Recovered {} billing accounts from {} in {} ms: {} from the snapshot at sequence {}, {} from the journal",
+                accounts.size(), directory.toAbsolutePath(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                fromSnapshot, snapshotSequence, accounts.size() - fromSnapshot);
+    }
+
+    /**
+     * The patient's account, created on the first call. Every later call returns the same account.
+     */
+    public BillingAccount getOrCreate(String patientId){
+        BillingAccount account = accounts.get(patientId);
+        if (account != null) {
+            return account;
+        }
+        if (patientId.isBlank() || patientId.length() > MAX_PATIENT_ID_LENGTH) {
+            throw new IllegalArgumentException("patientId must be 1 to " + MAX_PATIENT_ID_LENGTH + " characters");
+        }
+
+        appendLock.lock();
+        try {
+            account = accounts.get(patientId);
+            if (account != null) {
+                return account;
+            }
+            account = new BillingAccount(UUID.randomUUID().toString(), patientId, Instant.now().truncatedTo(ChronoUnit.MILLIS));
+            journal.append(account);
+            accounts.put(patientId, account);
+            return account;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not journal the billing account of patient " + patientId, e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public int size(){
+        return accounts.size();
+    }
+
+    @Scheduled(fixedDelayString = "${billing.accounts.snapshot.interval-ms:60000}")
+    public void snapshot(){
+        snapshotLock.lock();
+        try {
+            long sequence = lastSequence();
+            if (sequence == snapshotSequence) {
+                return;
+            }
+            long start = System.nanoTime();
+            // accounts created while this runs may get in too, replaying them on top of the snapshot changes nothing
+            BillingAccountSnapshot.write(snapshotFile, sequence, accounts.values());
+            snapshotSequence = sequence;
+
+            appendLock.lock();
+            try {
+                journal.deleteSegmentsUpTo(sequence);
+            } finally {
+                appendLock.unlock();
+            }
+            log.info("Billing account snapshot at sequence {} written in {} ms", sequence,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            log.warn("Billing account snapshot failed, keeping the journal: {}", e.getMessage());
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close(){
+        snapshot();
+        appendLock.lock();
+        try {
+            journal.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private long lastSequence(){
+        appendLock.lock();
+        try {
+            return journal.lastSequence();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void restore(BillingAccount account){
+        accounts.put(account.patientId(), account);
+    }
+}
@@ -1,30 +1,122 @@
 package com.pm.billingservice.grpc;
 
 
+import billing.BillingBatchRequest;
+import billing.BillingBatchResult;
+import billing.BillingError;
+import billing.BillingRequest;
 import billing.BillingResponse;
 import billing.BillingServiceGrpc;
+import com.pm.billingservice.account.BillingAccount;
+import com.pm.billingservice.account.BillingAccountStore;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 @GrpcService
 @Slf4j
+@RequiredArgsConstructor
 public class BillingGrpcService extends BillingServiceGrpc.BillingServiceImplBase {
 
+    private final BillingAccountStore billingAccountStore;
+
     @Override
     public void createBillingAccount(billing.BillingRequest billingRequest,
                                      StreamObserver<billing.BillingResponse> responseObserver ){
         log.info("createBillingAccount request received {}",billingRequest.toString());
 
-        // Business logic - e.g save too database, perform calculations etc
+        BillingResponse response;
+        try {
+            response = createAccount(billingRequest);
+        } catch (StatusRuntimeException e) {
+            responseObserver.onError(e);
+            return;
+        }
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
 
-        BillingResponse response = BillingResponse.newBuilder()
-                .setAccountId("12345")
-                .setStatus("ACTIVE")
-                .build();
+    /**
+     * Answers every request on the stream with a result carrying its requestId. Requests are pulled one at a time
+     * and only while the client keeps reading results, so a client that sends faster than it reads stalls on its
+     * own side (HTTP/2 flow control) instead of making this server buffer the whole batch.
+     */
+    @Override
+    public StreamObserver<BillingBatchRequest> createBillingAccounts(StreamObserver<BillingBatchResult> responseObserver){
+        ServerCallStreamObserver<BillingBatchResult> results = (ServerCallStreamObserver<BillingBatchResult>) responseObserver;
+        results.disableAutoRequest();
 
+        // false while the next request waits for the response side to become ready again
+        AtomicBoolean wasReady = new AtomicBoolean(false);
+        results.setOnReadyHandler(() -> {
+            if (results.isReady() && wasReady.compareAndSet(false, true)) {
+                results.request(1);
+            }
+        });
+        results.setOnCancelHandler(() -> log.warn("createBillingAccounts stream cancelled by the client"));
 
-        responseObserver.onNext(response);
-        responseObserver.onCompleted();
+        return new StreamObserver<>() {
+            // callbacks of one call never run concurrently
+            private int accounts;
+
+            @Override
+            public void onNext(BillingBatchRequest batchRequest) {
+                log.debug("createBillingAccounts request received {}", batchRequest);
+                BillingBatchResult.Builder result = BillingBatchResult.newBuilder().setRequestId(batchRequest.getRequestId());
+                try {
+                    result.setResponse(createAccount(batchRequest.getRequest()));
+                    accounts++;
+                } catch (RuntimeException e) {
+                    Status status = Status.fromThrowable(e);
+                    result.setError(BillingError.newBuilder()
+                            .setCode(status.getCode().value())
+                            .setMessage(String.valueOf(status.getDescription())));
+                }
+                results.onNext(result.build());
+
+                if (results.isReady()) {
+                    results.request(1);
+                } else {
+                    wasReady.set(false);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("createBillingAccounts stream failed after {} accounts: {}", accounts, Status.fromThrowable(t));
+            }
+
+            @Override
+            public void onCompleted() {
+                log.info("createBillingAccounts stream completed, {} accounts created", accounts);
+                results.onCompleted();
+            }
+        };
+    }
+
+    // idempotent, a retried request gets the account created the first time
+    private BillingResponse createAccount(BillingRequest billingRequest){
+        String patientId = billingRequest.getPatientId();
+        if (patientId.isBlank()) {
+            throw Status.INVALID_ARGUMENT.withDescription("patientId is required").asRuntimeException();
+        }
+        if (patientId.length() > BillingAccountStore.MAX_PATIENT_ID_LENGTH) {
+            throw Status.INVALID_ARGUMENT
+                    .withDescription("patientId is longer than " + BillingAccountStore.MAX_PATIENT_ID_LENGTH + " characters")
+                    .asRuntimeException();
+        }
+
+        BillingAccount account = billingAccountStore.getOrCreate(patientId);
+
+        return BillingResponse.newBuilder()
+                .setAccountId(account.accountId())
+                .setStatus("ACTIVE")
+                .build();
     }
 }
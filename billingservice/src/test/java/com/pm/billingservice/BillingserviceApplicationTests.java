@@ -3,7 +3,7 @@ package com.pm.billingservice;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "billing.accounts.data-dir=target/test-billing-accounts")
 class BillingserviceApplicationTests {
 
 	@Test
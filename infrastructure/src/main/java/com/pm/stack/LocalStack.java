@@ -45,7 +45,9 @@ public class LocalStack extends Stack {
                 createFargateService("AuthService","auth-service",
                         List.of(4005),
                         authServiceDB,
-                        Map.of("JWT_SECRET","DqfRNKlqMHzn35r7nepsMafZDB37pFSHJCxOySeW7fW"));
+                        Map.of("JWT_SIGNING_KEY_ID","local-2025-1",
+                                "JWT_SIGNING_PRIVATE_KEY","MIIEvQIBADANBgkqhkiG9w0BAQEFAASCBKcwggSjAgEAAoIBAQC/8D+9IJMA9K295xJhTbIZr6ICKQuRhJ7Hm2WaR5UKYRjG+ZIE2uaEJhQpDoiI/sU1Ik5ZAd89P9D41KFq5veHjHOm1hVoig1BV/qgQlcVgJFWpNmEVbg8k0XTOzAp3BpLS5k+H+4tQgMd4sSN6qCZSby8stN7EVH36URPEty5RiYlkmui/AeUqga3FHm3VUkm6wiM6VgHUpo6UGaWSHViKPxzpgYJmK+2CETQwk3+8OzKqVLytf6sDZQ8hcTqXGOJpQC2VblIqFjXXWUnNnTbOKxjE6KZeGzYQUkKTMKX7wCnFib8VHffKnbKAHr19PusT3htQcOJZMNCdxp9sQ15AgMBAAECggEAQhYRjCf8FZcpfzphfLlIuklbycyiHA+CsA2UVSOScIlwA4qIuT05o4SM6noDjs/RzPKr8T+QwsEHTbXAglNWJQi6BVau9liaKcaGF8nfvBqRcDjAYC03izvWDd3SPod3UjeMYvSRiGmzMwYSUR7Y/w6BeqND55rWEzrw9xzyfKPOPZaVN9VjMhCjvjnnTcRHobQJdZG7HB6pvvQRe2JUvFZkvAMP5LFGU66rA6YgrDtC0rsln2X9ge4VPdBFOckyUrMQuqXHeQkf5v/vz7CKY/sYpAEzd5YIL2M4wE75r/AcmbdE+1mRx/kvpO2Abrxda9C/m/dkUhMKRZiGHhLEtQKBgQDJF18DsE9PFNk8AQti89rHYIaQ9htn+vTHtGxgbNZCTmPRTXIZKOhC3rVigSIB1QrvdXUu3dSezkPspheNFgdIs8BpuWW98Hher3o9V77IZ3vvq4bOqfYlqLpmFPluagVGtmxXVMrEWp7Py+Q85PuM6xxSLN56uqBbF71yiT178wKBgQD0WRRvtuzO7FgA9uM2mfXm6nZD/xjOl/U+4ixPOtzgDum+eIksODmtQi6yaKm4uE03luoN1tPdF+mt/MScHl156GdQO4Wky6lS86U5q/QgnnfmZbtTYF0DKAAj77xK99s4p4YITerepTJiAJrE6QrPt+gEmwAXfzwR8Aoyj7WH4wKBgH2lebu/TT63YyjH6kpw3dFX8Zzf+a3Vs16Y0GLLfnC9tEbSIimwUrd9mk4rK4mDiSqn9IlNGA4GCZDzEqIYEoMNtXsZ2YV9nGhlMnbjvZRQfLL7NOcqcV+EdrtT/apM2nEdiMJke7GGgdaKqliWJssdGHwMBxMeSxW/1qKbN+ybAoGBAL8nqSs0SdIfZ0Fp45rlm1AJAHh1aqzEiGGngs6A2CaYxBf0KCvl2IlIi0ubQZt240Gn2Hb3J0uB15f7dLxFrQ8f1yMXTZf8k/yHCy0w7o1OK7Kcx42Uh29era1vcTic6m1J8Tsx6ZpAVkgA/RMq1QBneSWRNOMs8It/5Bpl/rfNAoGAT6i3aKBgyrVT9ka+FjXLqRxL/vId74D0Xic70ZaK7znFL2IyWx1zX3ffpPD9/+QC7/Jzm3JIFVTWUMPjp2Gd4LCQWunY8pvvM7EVvRv5n2UU2vvwdLAGh5TPldvJA2U5hNtA5h/M838oKleXuvsweBnvXNwy8Z2NQUgov5l5J+A=",
+                                "JWT_SIGNING_PUBLIC_KEY","MIIBIjANBgkqhkiG9w0BAQEFAAOCAQ8AMIIBCgKCAQEAv/A/vSCTAPStvecSYU2yGa+iAikLkYSex5tlmkeVCmEYxvmSBNrmhCYUKQ6IiP7FNSJOWQHfPT/Q+NShaub3h4xzptYVaIoNQVf6oEJXFYCRVqTZhFW4PJNF0zswKdwaS0uZPh/uLUIDHeLEjeqgmUm8vLLTexFR9+lETxLcuUYmJZJrovwHlKoGtxR5t1VJJusIjOlYB1KaOlBmlkh1Yij8c6YGCZivtghE0MJN/vDsyqlS8rX+rA2UPIXE6lxjiaUAtlW5SKhY111lJzZ02zisYxOimXhs2EFJCkzCl+8ApxYm/FR33yp2ygB69fT7rE94bUHDiWTDQncafbENeQIDAQAB"));
 
         authService.getNode().addDependency(authDBHealthCheck);
         authService.getNode().addDependency(authServiceDB);
@@ -189,7 +191,8 @@ public class LocalStack extends Stack {
         }
 
         if(db != null){
-            envVars.put("SPRING_DATASOURCE_URL","jdbc:postgresql://%s:%s/%s-db".formatted(
+            // reWriteBatchedInserts: the driver sends a JDBC insert batch as multi-row inserts instead of one by one
+            envVars.put("SPRING_DATASOURCE_URL","jdbc:postgresql://%s:%s/%s-db?reWriteBatchedInserts=true".formatted(
                     db.getDbInstanceEndpointAddress(),
                     db.getDbInstanceEndpointPort(),
                     imageName
@@ -0,0 +1,139 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Closed loop load against a deployed stack: for each concurrency level, that many clients send requests back to
+ * back for a fixed time and the throughput and latency percentiles are printed. Run it once per execution mode
+ * (deploy with SPRING_THREADS_VIRTUAL_ENABLED=true, then false) on the 256 CPU unit tasks and compare where
+ * throughput stops growing with concurrency.
+ * <p>
+ * Skipped unless started with -Dbenchmark=true. Optional: -Dbenchmark.base-url, -Dbenchmark.concurrency=1,8,32,...,
+ * -Dbenchmark.seconds per level, -Dbenchmark.path (defaults to GET /api/patients).
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ConcurrencyScalingBenchmarkTest {
+
+    private static final String BASE_URL = System.getProperty("benchmark.base-url", "http://localhost:4004");
+    private static final String PATH = System.getProperty("benchmark.path", "/api/patients?limit=20");
+    private static final int SECONDS = Integer.getInteger("benchmark.seconds", 20);
+    private static final int[] CONCURRENCY = Arrays.stream(System.getProperty("benchmark.concurrency", "1,4,16,64,128,256,512").split(","))
+            .mapToInt(level -> Integer.parseInt(level.trim()))
+            .toArray();
+
+    private static String token;
+
+    @BeforeAll
+    static void login(){
+        String loginPayload = """
+                {
+                    "email":"testuser@test.com",
+                    "password":"password123"
+                }
+                """;
+
+        token = given()
+                .baseUri(BASE_URL)
+                .contentType("application/json")
+                .body(loginPayload)
+                .when()
+                .post("/auth/login")
+                .then()
+                .statusCode(200)
+                .extract()
+                .jsonPath()
+                .get("token");
+    }
+
+    @Test
+    public void throughputAndLatencyByConcurrency() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(BASE_URL + PATH))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+
+        System.out.printf("%n%s %s, %d s per level%n", request.method(), request.uri(), SECONDS);
+        System.out.printf("%11s %10s %8s %8s %8s %8s%n", "concurrency", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+
+        // the client side must not be the bottleneck, one virtual thread per simulated client
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient httpClient = HttpClient.newBuilder().executor(clients).build()) {
+            runLevel(httpClient, clients, request, CONCURRENCY[0], Math.min(SECONDS, 5)); // warm up
+            for (int concurrency : CONCURRENCY) {
+                LevelResult result = runLevel(httpClient, clients, request, concurrency, SECONDS);
+                System.out.printf("%11d %10.1f %8.1f %8.1f %8.1f %8d%n", concurrency,
+                        result.latenciesNanos().length / (double) SECONDS,
+                        percentileMillis(result.latenciesNanos(), 0.50),
+                        percentileMillis(result.latenciesNanos(), 0.99),
+                        percentileMillis(result.latenciesNanos(), 1.0),
+                        result.errors());
+            }
+        }
+    }
+
+    private static LevelResult runLevel(HttpClient httpClient, ExecutorService clients, HttpRequest request,
+                                        int concurrency, int seconds) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<Future<long[]>> workers = new ArrayList<>(concurrency);
+
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(clients.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                        continue;
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - start;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+
+        List<long[]> perWorker = new ArrayList<>(concurrency);
+        for (Future<long[]> worker : workers) {
+            perWorker.add(worker.get());
+        }
+        long[] all = perWorker.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new LevelResult(all, errors.get());
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double percentile){
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private record LevelResult(long[] latenciesNanos, long errors) {
+    }
+}
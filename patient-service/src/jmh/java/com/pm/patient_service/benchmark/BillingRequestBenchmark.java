@@ -0,0 +1,38 @@
+package com.pm.patient_service.benchmark;
+
+import billing.BillingRequest;
+import com.pm.patient_service.grpc.BillingServiceGrpcClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BillingRequestBenchmark {
+
+    private String patientId;
+
+    @Setup
+    public void setUp(){
+        patientId = UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public BillingRequest build(){
+        return BillingServiceGrpcClient.toBillingRequest(patientId, "John Doe", "john.doe@example.com");
+    }
+
+    // what the channel does with it before it hits the wire
+    @Benchmark
+    public byte[] buildAndSerialize(){
+        return BillingServiceGrpcClient.toBillingRequest(patientId, "John Doe", "john.doe@example.com").toByteArray();
+    }
+}
@@ -0,0 +1,56 @@
+package com.pm.patient_service.benchmark;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import patient.events.PatientEvent;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// built once per write for the outbox, parsed by every consumer (this service's replicas and analytic-service)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PatientEventBenchmark {
+
+    private String patientId;
+    private PatientEvent event;
+    private byte[] payload;
+
+    @Setup
+    public void setUp(){
+        patientId = UUID.randomUUID().toString();
+        event = build();
+        payload = event.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] buildAndSerialize(){
+        return build().toByteArray();
+    }
+
+    @Benchmark
+    public byte[] serialize(){
+        return event.toByteArray();
+    }
+
+    @Benchmark
+    public PatientEvent parseFrom() throws InvalidProtocolBufferException {
+        return PatientEvent.parseFrom(payload);
+    }
+
+    private PatientEvent build(){
+        return PatientEvent.newBuilder()
+                .setPatientId(patientId)
+                .setName("John Doe")
+                .setEmail("john.doe@example.com")
+                .setEventType("PATIENT_CREATED")
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package com.pm.patient_service.benchmark;
+
+import com.pm.patient_service.dto.PatientResponseDto;
+import com.pm.patient_service.mapper.PatientMapper;
+import com.pm.patient_service.mapper.PatientMapperImpl;
+import com.pm.patient_service.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// every patient read goes through this, GET /patients maps up to 500 per request
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PatientMapperBenchmark {
+
+    private PatientMapper patientMapper;
+    private Patient patient;
+
+    @Setup
+    public void setUp(){
+        patientMapper = new PatientMapperImpl();
+        patient = Patient.builder()
+                .id(UUID.randomUUID())
+                .name("John Doe")
+                .email("john.doe@example.com")
+                .address("123 Main Street, Springfield")
+                .dateOfBirth(LocalDate.of(1985, 6, 15))
+                .registeredDate(LocalDate.of(2024, 1, 10))
+                .build();
+    }
+
+    @Benchmark
+    public PatientResponseDto toPatientResponseDto(){
+        return patientMapper.toPatientResponseDto(patient);
+    }
+}
@@ -0,0 +1,82 @@
+package com.pm.patient_service.benchmark;
+
+import com.pm.patient_service.index.PatientSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// GET /patients/search on a full index. Sample time so the result has the p99 next to the mean,
+// a few slow common-trigram queries are what the candidate cap is for
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PatientSearchBenchmark {
+
+    private static final String[] FIRST_NAMES = {"john", "johanna", "maria", "mario", "james", "jane", "michael",
+            "michelle", "robert", "roberta", "david", "daniela", "sarah", "samuel", "thomas", "teresa", "anna",
+            "andrew", "lucas", "lucia", "peter", "petra", "emma", "emil", "olivia", "oliver", "sophia", "simon"};
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ra", "ton", "ber", "son", "vi", "de", "ga",
+            "nel", "sch", "mur", "ly", "pe", "ris", "ta", "ford", "man", "wood"};
+
+    @Param("1000000")
+    private int patients;
+
+    private PatientSearchIndex index;
+    private int next;
+
+    // what people type: the start of a first name, a full name, and the same with a typo
+    private final String[] prefixQueries = {"jo", "mar", "mich", "rob", "da", "sa", "tho", "an", "luc", "pe"};
+    private final String[] nameQueries = new String[64];
+    private final String[] typoQueries = {"jhon", "mraia", "micheal", "robret", "dvaid", "sarha", "thmoas", "anan"};
+
+    @Setup
+    public void setUp(){
+        index = new PatientSearchIndex(0.5, 50_000, new SimpleMeterRegistry());
+        Random random = new Random(42);
+        for (int i = 0; i < patients; i++) {
+            String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String last = lastName(random);
+            String name = first + " " + last;
+            index.index(UUID.randomUUID(), name, first + "." + last + i + "@example.com");
+            if (i < nameQueries.length) {
+                nameQueries[i] = name;
+            }
+        }
+    }
+
+    @Benchmark
+    public List<UUID> prefix(){
+        return index.search(prefixQueries[next++ % prefixQueries.length], 20);
+    }
+
+    @Benchmark
+    public List<UUID> fullName(){
+        return index.search(nameQueries[next++ % nameQueries.length], 20);
+    }
+
+    @Benchmark
+    public List<UUID> typo(){
+        return index.search(typoQueries[next++ % typoQueries.length], 20);
+    }
+
+    private static String lastName(Random random){
+        StringBuilder lastName = new StringBuilder();
+        for (int s = 2 + random.nextInt(2); s > 0; s--) {
+            lastName.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return lastName.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package com.pm.patient_service.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pm.patient_service.dto.PatientResponseDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache for single patient lookups. Entries are evicted on local writes and on patient
+ * change events from other replicas (see {@link com.pm.patient_service.kafka.PatientEventConsumer}); the TTL
+ * bounds staleness if an event is missed.
+ */
+@Component
+public class PatientCache {
+
+    // async only so the database load runs outside the map's bin lock, a blocking load inside
+    // Cache.get(key, loader) would pin the carrier of a virtual thread for the whole query
+    private final AsyncCache<UUID, PatientResponseDto> patientsById;
+    // email -> id only, so an update never leaves two copies of a patient to invalidate. Keyed by the email exactly
+    // as given, like the lookup and the unique constraint in the database
+    private final Cache<String, UUID> idsByEmail;
+
+    public PatientCache(@Value("${patient.cache.max-size:10000}") long maxSize,
+                        @Value("${patient.cache.ttl:5m}") Duration ttl,
+                        MeterRegistry meterRegistry) {
+        this.patientsById = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        this.idsByEmail = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, patientsById, "patientsById");
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByEmail, "patientIdsByEmail");
+    }
+
+    public Optional<PatientResponseDto> getById(UUID id, Function<UUID, PatientResponseDto> loader){
+        CompletableFuture<PatientResponseDto> loading = new CompletableFuture<>();
+        CompletableFuture<PatientResponseDto> patient = patientsById.get(id, (key, executor) -> loading);
+
+        // the first caller loads on its own thread, concurrent callers for the same id wait for it.
+        // A null or failed load is not cached, unknown ids always reach the database
+        if (patient == loading) {
+            try {
+                loading.complete(loader.apply(id));
+            } catch (RuntimeException e) {
+                loading.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return Optional.ofNullable(patient.join());
+        } catch (CompletionException e) {
+            // another caller's load failed, surface the same exception it got
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    public Optional<PatientResponseDto> getByEmail(String email,
+                                                   Function<String, PatientResponseDto> emailLoader,
+                                                   Function<UUID, PatientResponseDto> idLoader){
+        UUID id = idsByEmail.getIfPresent(email);
+        if (id != null) {
+            Optional<PatientResponseDto> patient = getById(id, idLoader);
+            // the patient may have changed email since the mapping was cached
+            if (patient.isPresent() && patient.get().getEmail().equals(email)) {
+                return patient;
+            }
+            idsByEmail.invalidate(email);
+        }
+
+        PatientResponseDto patient = emailLoader.apply(email);
+        if (patient == null) {
+            return Optional.empty();
+        }
+        UUID patientId = UUID.fromString(patient.getId());
+        patientsById.put(patientId, CompletableFuture.completedFuture(patient));
+        idsByEmail.put(email, patientId);
+        return Optional.of(patient);
+    }
+
+    public void evict(UUID id){
+        patientsById.synchronous().invalidate(id);
+    }
+
+    public void evictEmail(String email){
+        if (email != null) {
+            idsByEmail.invalidate(email);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.pm.patient_service.cache;
+
+import com.pm.patient_service.model.PatientDataRevision;
+import com.pm.patient_service.repository.PatientDataRevisionRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+
+/**
+ * Revision of the patient table: the number of committed creates, updates and deletes from every replica, kept in
+ * a few database rows that each write bumps one of in its own transaction. Used as the ETag of patient list pages.
+ * It is coarse on purpose: any change invalidates every page, but reading it is one small aggregate, so a client
+ * polling an unchanged list gets a 304 without the page query. The bump commits with the write, so no replica can
+ * see the new revision before the rows it stands for, and as every committed write adds one the sum never comes
+ * back to a value a client already holds.
+ * <p>
+ * A write picks its row by patient id, so writes to different patients rarely wait for each other's commit, and
+ * writes to the same patient already do (they lock the patient row).
+ * <p>
+ * Reads answered from a replica's cache or indexes can lag writes made elsewhere; those are tagged by their body
+ * instead (see PatientController), or a lagging answer would be tagged as current.
+ */
+@Component
+public class PatientDataVersion {
+
+    private final PatientDataRevisionRepository patientDataRevisionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int shards;
+
+    public PatientDataVersion(PatientDataRevisionRepository patientDataRevisionRepository,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${patient.etag.revision-shards:16}") int shards) {
+        this.patientDataRevisionRepository = patientDataRevisionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.shards = Math.max(1, shards);
+    }
+
+    @PostConstruct
+    void createRows(){
+        for (long shard = 1; shard <= shards; shard++) {
+            long id = shard;
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (!patientDataRevisionRepository.existsById(id)) {
+                        patientDataRevisionRepository.save(new PatientDataRevision(id, 0));
+                    }
+                });
+            } catch (DataIntegrityViolationException e) {
+                // another replica starting at the same time created it
+            }
+        }
+    }
+
+    /**
+     * Call last in the write's transaction. The write's own statements are flushed first, so the row lock is only
+     * held from here to the commit.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void bump(UUID patientId){
+        patientDataRevisionRepository.flush();
+        patientDataRevisionRepository.increment(Math.floorMod(patientId.hashCode(), shards) + 1);
+    }
+
+    public String etag(){
+        return "r" + patientDataRevisionRepository.sumRevisions();
+    }
+}
@@ -1,17 +1,28 @@
 package com.pm.patient_service.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pm.patient_service.dto.PatientBatchResponseDto;
+import com.pm.patient_service.dto.PatientPageResponseDto;
 import com.pm.patient_service.dto.PatientRequestDto;
 import com.pm.patient_service.dto.PatientResponseDto;
 import com.pm.patient_service.dto.validators.CreatePatientValidationGroup;
+import com.pm.patient_service.service.PatientExportService;
+import com.pm.patient_service.service.PatientExportService.ExportFormat;
 import com.pm.patient_service.service.PatientService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.groups.Default;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.UUID;
@@ -23,12 +34,60 @@ import java.util.UUID;
 public class PatientController {
 
     private final  PatientService patientService;
+    private final PatientExportService patientExportService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    @Operation(summary = "Get Patients")
-    public ResponseEntity<List<PatientResponseDto>> getPatients(){
-        List<PatientResponseDto> patientResponseDtoList = patientService.getPatients();
-        return new ResponseEntity<>(patientResponseDtoList, HttpStatus.OK);
+    @Operation(summary = "Get Patients", description = "Keyset paginated, pass the returned nextCursor as 'after' to get the next page. "
+            + "With 'email' only the patient with that email is returned, if any")
+    public ResponseEntity<PatientPageResponseDto> getPatients(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "registeredDate") String sort,
+            @RequestParam(required = false) String email,
+            WebRequest webRequest){
+        if (email != null) {
+            PatientPageResponseDto lookup = PatientPageResponseDto.builder()
+                    .patients(patientService.findPatientByEmail(email).stream().toList())
+                    .build();
+            return contentTagged(lookup, webRequest);
+        }
+
+        String etag = patientService.currentETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+
+        PatientPageResponseDto patientPage = patientService.getPatients(after, limit, sort);
+        return versioned(etag, patientPage);
+    }
+
+    @GetMapping(path = "/search")
+    @Operation(summary = "Search Patients", description = "Matches name or email prefixes and tolerates small typos, best matches first")
+    public ResponseEntity<List<PatientResponseDto>> searchPatients(@RequestParam String q,
+                                                                   @RequestParam(defaultValue = "20") int limit,
+                                                                   WebRequest webRequest){
+        List<PatientResponseDto> patients = patientService.searchPatients(q, limit);
+        return contentTagged(patients, webRequest);
+    }
+
+    @GetMapping(path = "/{id}")
+    @Operation(summary = "Get a Patient")
+    public ResponseEntity<PatientResponseDto> getPatient(@PathVariable UUID id, WebRequest webRequest){
+        PatientResponseDto patient = patientService.getPatient(id);
+        return contentTagged(patient, webRequest);
+    }
+
+    @GetMapping(path = "/export")
+    @Operation(summary = "Export all Patients", description = "Streams every patient as newline delimited JSON (default) or CSV")
+    public ResponseEntity<StreamingResponseBody> exportPatients(@RequestParam(defaultValue = "ndjson") String format){
+        ExportFormat exportFormat = ExportFormat.fromParam(format);
+        StreamingResponseBody body = outputStream -> patientExportService.exportPatients(exportFormat, outputStream);
+
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=patients." + exportFormat.getExtension())
+                .body(body);
     }
 
     @PostMapping
@@ -40,6 +99,13 @@ public class PatientController {
         return new ResponseEntity<>(createdPatient, HttpStatus.OK);
     }
 
+    @PostMapping(path = "/batch")
+    @Operation(summary = "Create Patients in bulk", description = "Items are validated and created independently, the response carries a result per item")
+    public ResponseEntity<PatientBatchResponseDto> registerPatients(@RequestBody List<PatientRequestDto> patientRequestDtos){
+        PatientBatchResponseDto batchResponse = patientService.createPatients(patientRequestDtos);
+        return new ResponseEntity<>(batchResponse, HttpStatus.OK);
+    }
+
     @PutMapping(path = "/{id}")
     @Operation(summary = "Update a patient")
     public ResponseEntity<PatientResponseDto> updatePatient(  @PathVariable UUID id, @Validated({Default.class}) @RequestBody PatientRequestDto patientRequestDto){
@@ -54,4 +120,27 @@ public class PatientController {
         patientService.deletePatient(id);
         return ResponseEntity.noContent().build();
     }
+
+    // Answers from this replica's cache or indexes are tagged by what they contain: a 304 then means the client
+    // already has exactly what this replica would send, never lagging longer than the body itself would
+    private <T> ResponseEntity<T> contentTagged(T body, WebRequest webRequest){
+        String etag;
+        try {
+            etag = "c" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize patient response", e);
+        }
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return versioned(etag, body);
+    }
+
+    // strong ETag; no-cache makes clients revalidate instead of reusing it blindly
+    private static <T> ResponseEntity<T> versioned(String etag, T body){
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(body);
+    }
 }
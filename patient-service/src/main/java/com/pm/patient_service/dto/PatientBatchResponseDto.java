@@ -0,0 +1,23 @@
+package com.pm.patient_service.dto;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PatientBatchResponseDto {
+
+    private int created;
+
+    private int failed;
+
+    private List<PatientBatchResultDto> results;
+}
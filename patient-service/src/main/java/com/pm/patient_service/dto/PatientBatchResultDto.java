@@ -0,0 +1,27 @@
+package com.pm.patient_service.dto;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PatientBatchResultDto {
+
+    public static final String CREATED = "CREATED";
+    public static final String FAILED = "FAILED";
+
+    // position of the item in the submitted batch
+    private int index;
+
+    private String status;
+
+    private PatientResponseDto patient;
+
+    private String message;
+}
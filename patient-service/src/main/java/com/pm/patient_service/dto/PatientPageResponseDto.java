@@ -0,0 +1,22 @@
+package com.pm.patient_service.dto;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PatientPageResponseDto {
+
+    private List<PatientResponseDto> patients;
+
+    // null when this is the last page
+    private String nextCursor;
+}
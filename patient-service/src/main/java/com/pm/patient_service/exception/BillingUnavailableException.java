@@ -0,0 +1,7 @@
+package com.pm.patient_service.exception;
+
+public class BillingUnavailableException extends RuntimeException {
+    public BillingUnavailableException(String message) {
+        super(message);
+    }
+}
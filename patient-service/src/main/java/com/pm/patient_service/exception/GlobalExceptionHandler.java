@@ -50,4 +50,34 @@ public class GlobalExceptionHandler{
         return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(InvalidPageRequestException.class)
+    public ResponseEntity<Map<String,String>> handleInvalidPageRequestException(InvalidPageRequestException ex){
+
+        log.warn("Invalid page request {}",ex.getMessage());
+        Map<String, String> errors = new HashMap<>();
+        errors.put("message",ex.getMessage());
+
+        return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(UnsupportedExportFormatException.class)
+    public ResponseEntity<Map<String,String>> handleUnsupportedExportFormatException(UnsupportedExportFormatException ex){
+
+        log.warn("Unsupported export format {}",ex.getMessage());
+        Map<String, String> errors = new HashMap<>();
+        errors.put("message",ex.getMessage());
+
+        return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(BillingUnavailableException.class)
+    public ResponseEntity<Map<String,String>> handleBillingUnavailableException(BillingUnavailableException ex){
+
+        log.warn("Billing service unavailable {}",ex.getMessage());
+        Map<String, String> errors = new HashMap<>();
+        errors.put("message","Billing service is unavailable, try again later");
+
+        return new ResponseEntity<>(errors, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
 }
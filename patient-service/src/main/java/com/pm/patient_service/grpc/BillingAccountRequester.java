@@ -0,0 +1,136 @@
+package com.pm.patient_service.grpc;
+
+import billing.BillingRequest;
+import com.pm.patient_service.exception.BillingUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Requests billing accounts for newly registered patients. In async mode (the default) the HTTP thread only
+ * starts the call; calls that fail or are shed go to a bounded in-memory queue that is retried in the background.
+ * Calls the client shed without sending (circuit open, too many in flight) go back to the queue without using up an
+ * attempt. The queue does not survive a restart.
+ */
+@Component
+@Slf4j
+public class BillingAccountRequester {
+
+    private final BillingServiceGrpcClient billingServiceGrpcClient;
+    private final boolean asyncEnabled;
+    private final int maxAttempts;
+    private final int retryBatchSize;
+    private final BlockingQueue<PendingBillingRequest> retryQueue;
+
+    private final Counter retriesScheduled;
+    private final Counter retriesDropped;
+
+    public BillingAccountRequester(BillingServiceGrpcClient billingServiceGrpcClient,
+                                   @Value("${billing.service.async.enabled:true}") boolean asyncEnabled,
+                                   @Value("${billing.service.retry.queue-capacity:10000}") int queueCapacity,
+                                   @Value("${billing.service.retry.max-attempts:10}") int maxAttempts,
+                                   @Value("${billing.service.retry.batch-size:100}") int retryBatchSize,
+                                   MeterRegistry meterRegistry) {
+        this.billingServiceGrpcClient = billingServiceGrpcClient;
+        this.asyncEnabled = asyncEnabled;
+        this.maxAttempts = maxAttempts;
+        this.retryBatchSize = retryBatchSize;
+        this.retryQueue = new LinkedBlockingQueue<>(queueCapacity);
+
+        this.retriesScheduled = Counter.builder("billing.retry.scheduled")
+                .description("Billing account requests queued for a background retry")
+                .register(meterRegistry);
+        this.retriesDropped = Counter.builder("billing.retry.dropped")
+                .description("Billing account requests given up on, queue full or out of attempts")
+                .register(meterRegistry);
+        Gauge.builder("billing.retry.queue.size", retryQueue, BlockingQueue::size)
+                .register(meterRegistry);
+    }
+
+    public void requestBillingAccount(String patientId, String name, String email){
+        if (!asyncEnabled) {
+            billingServiceGrpcClient.createBillingAccount(patientId, name, email);
+            return;
+        }
+
+        BillingRequest request = BillingServiceGrpcClient.toBillingRequest(patientId, name, email);
+        send(new PendingBillingRequest(request, 0));
+    }
+
+    /**
+     * For callers that already tried (e.g. the batch path) and only want the failure retried.
+     */
+    public void retryLater(BillingRequest request){
+        schedule(new PendingBillingRequest(request, 1));
+    }
+
+    @Scheduled(fixedDelayString = "${billing.service.retry.interval-ms:5000}")
+    public void retryPending(){
+        if (retryQueue.isEmpty()) {
+            return;
+        }
+        if (billingServiceGrpcClient.getCircuitState() != BillingCircuitBreaker.State.CLOSED) {
+            // one probe: asking for its permit is what takes an open breaker to half open once the open duration is
+            // over, nothing else may be calling. The rest waits until the breaker is closed again
+            PendingBillingRequest probe = retryQueue.poll();
+            if (probe != null) {
+                send(probe);
+            }
+            return;
+        }
+
+        List<PendingBillingRequest> pending = new ArrayList<>(retryBatchSize);
+        retryQueue.drainTo(pending, retryBatchSize);
+        log.info("Retrying {} billing account requests", pending.size());
+        pending.forEach(this::send);
+    }
+
+    private void send(PendingBillingRequest pending){
+        billingServiceGrpcClient.createBillingAccountAsync(pending.request())
+                .whenComplete((response, ex) -> {
+                    if (ex == null) {
+                        log.info("Received response from billin service via GRPC:{}", response);
+                    } else if (unwrap(ex) instanceof BillingUnavailableException) {
+                        // never sent, so not an attempt
+                        schedule(pending);
+                    } else {
+                        log.warn("Billing account request for patient {} failed: {}",
+                                pending.request().getPatientId(), ex.getMessage());
+                        schedule(new PendingBillingRequest(pending.request(), pending.attempts() + 1));
+                    }
+                });
+    }
+
+    private void schedule(PendingBillingRequest pending){
+        if (pending.attempts() >= maxAttempts) {
+            retriesDropped.increment();
+            log.error("Giving up on billing account for patient {} after {} attempts",
+                    pending.request().getPatientId(), pending.attempts());
+            return;
+        }
+        if (!retryQueue.offer(pending)) {
+            retriesDropped.increment();
+            log.error("Billing retry queue full, dropping billing account request for patient {}",
+                    pending.request().getPatientId());
+            return;
+        }
+        retriesScheduled.increment();
+    }
+
+    private static Throwable unwrap(Throwable ex){
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    private record PendingBillingRequest(BillingRequest request, int attempts) {
+    }
+}
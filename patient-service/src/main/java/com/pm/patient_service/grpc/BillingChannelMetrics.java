@@ -0,0 +1,106 @@
+package com.pm.patient_service.grpc;
+
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Calls per billingservice instance, by the address the load balancer sent each one to: how many, how long and how
+ * many are open right now, so an uneven spread over the instances shows up on a dashboard. Meters are registered
+ * the first time an address is seen.
+ */
+class BillingChannelMetrics implements ClientInterceptor {
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, AddressMeters> addresses = new ConcurrentHashMap<>();
+    private final ClientStreamTracer.Factory tracerFactory = new ClientStreamTracer.Factory() {
+        @Override
+        public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+            return new AddressTracer();
+        }
+    };
+
+    BillingChannelMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                               CallOptions callOptions, Channel next) {
+        return next.newCall(method, callOptions.withStreamTracerFactory(tracerFactory));
+    }
+
+    private AddressMeters of(SocketAddress remoteAddress){
+        String address = remoteAddress instanceof InetSocketAddress inet
+                ? inet.getHostString() + ":" + inet.getPort()
+                : String.valueOf(remoteAddress);
+        AddressMeters meters = addresses.get(address);
+        return meters != null ? meters : addresses.computeIfAbsent(address, AddressMeters::new);
+    }
+
+    // a call that never got a connection (deadline while connecting, channel shut down) has no address and isn't counted
+    private class AddressTracer extends ClientStreamTracer {
+
+        private volatile AddressMeters meters;
+        private volatile long start;
+
+        @Override
+        public void streamCreated(Attributes transportAttrs, Metadata headers) {
+            AddressMeters created = of(transportAttrs.get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR));
+            created.active.incrementAndGet();
+            start = System.nanoTime();
+            meters = created;
+        }
+
+        @Override
+        public void streamClosed(Status status) {
+            AddressMeters closed = meters;
+            if (closed == null) {
+                return;
+            }
+            closed.active.decrementAndGet();
+            (status.isOk() ? closed.success : closed.failure).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private class AddressMeters {
+
+        private final Timer success;
+        private final Timer failure;
+        private final AtomicInteger active = new AtomicInteger();
+
+        private AddressMeters(String address) {
+            success = timer(address, "success");
+            failure = timer(address, "failure");
+            Gauge.builder("billing.grpc.client.instance.active", active, AtomicInteger::get)
+                    .description("Calls open to one billingservice instance right now")
+                    .tag("address", address)
+                    .register(meterRegistry);
+        }
+
+        private Timer timer(String address, String outcome){
+            return Timer.builder("billing.grpc.client.instance.calls")
+                    .description("Calls (unary and streams) to one billingservice instance")
+                    .tag("address", address)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
+}
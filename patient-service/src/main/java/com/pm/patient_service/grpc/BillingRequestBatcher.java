@@ -0,0 +1,85 @@
+package com.pm.patient_service.grpc;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Groups items submitted from any thread into batches: a batch is handed to {@code sender} once it holds
+ * {@code maxBatchSize} items, or {@code window} after its first item arrived, whichever comes first. A lone call
+ * waits at most the window, a burst of registrations goes out in full batches straight away.
+ */
+public class BillingRequestBatcher<T> {
+
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final Consumer<List<T>> sender;
+    private final ScheduledExecutorService timer;
+
+    // not synchronized: a virtual thread would stay pinned if scheduling the flush had to wait for the timer's lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<T> pending;
+    private ScheduledFuture<?> scheduledFlush;
+
+    public BillingRequestBatcher(int maxBatchSize, Duration window, Consumer<List<T>> sender) {
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = window.toNanos();
+        this.sender = sender;
+        this.timer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("billing-batcher").daemon().factory());
+        this.pending = new ArrayList<>(maxBatchSize);
+    }
+
+    public void submit(T item){
+        List<T> full = null;
+        lock.lock();
+        try {
+            pending.add(item);
+            if (pending.size() >= maxBatchSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                scheduledFlush = timer.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) {
+            sender.accept(full);
+        }
+    }
+
+    public void flush(){
+        List<T> batch;
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        } finally {
+            lock.unlock();
+        }
+        sender.accept(batch);
+    }
+
+    public void shutdown(){
+        flush();
+        timer.shutdown();
+    }
+
+    // caller holds the lock
+    private List<T> takePending(){
+        List<T> batch = pending;
+        pending = new ArrayList<>(maxBatchSize);
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+}
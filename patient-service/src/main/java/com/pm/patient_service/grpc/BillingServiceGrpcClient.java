@@ -1,47 +1,423 @@
 package com.pm.patient_service.grpc;
 
+import billing.BillingBatchRequest;
+import billing.BillingBatchResult;
 import billing.BillingRequest;
 import billing.BillingResponse;
 import billing.BillingServiceGrpc;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.pm.patient_service.exception.BillingUnavailableException;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Service
 public class BillingServiceGrpcClient {
     private static final Logger log = LoggerFactory.getLogger(BillingServiceGrpcClient.class);
+
+    // statuses that say something about the health of billingservice, anything else is the caller's problem
+    private static final Set<Status.Code> BREAKER_FAILURES = Set.of(
+            Status.Code.UNAVAILABLE,
+            Status.Code.DEADLINE_EXCEEDED,
+            Status.Code.RESOURCE_EXHAUSTED,
+            Status.Code.INTERNAL,
+            Status.Code.UNKNOWN);
+
+    private final ManagedChannel channel;
+    private final ExecutorService callbackExecutor;
+    private final long shutdownTimeoutMs;
     private final BillingServiceGrpc.BillingServiceBlockingStub blockingStub;
+    private final BillingServiceGrpc.BillingServiceFutureStub futureStub;
+    private final BillingServiceGrpc.BillingServiceStub asyncStub;
+    private final long deadlineMs;
+    private final boolean streamEnabled;
+    private final long streamDeadlineMs;
+    private final BillingRequestBatcher<StreamedRequest> batcher;
+    private final AtomicLong requestIds = new AtomicLong();
+    private final int batchMaxInFlight;
+    private final Semaphore asyncInFlight;
+    private final BillingCircuitBreaker circuitBreaker;
+
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final Counter circuitOpenRejections;
+    private final Counter bulkheadRejections;
+    private final Timer streamSuccessTimer;
+    private final Timer streamFailureTimer;
+    private final DistributionSummary streamBatchSize;
 
     //localhost:9002/BillingService/CreatePatientAccount
     // aws.grpc:12345/BillingService/CreatePatientAccount
     public BillingServiceGrpcClient(
             @Value("${billing.service.address:localhost}") String serverAddress,
-            @Value("${billing.service.grpc.port:9002}") int serverPort
+            @Value("${billing.service.grpc.port:9002}") int serverPort,
+            @Value("${billing.service.target:}") String target,
+            @Value("${billing.service.load-balancing-policy:round_robin}") String loadBalancingPolicy,
+            @Value("${billing.service.keep-alive-ms:30000}") long keepAliveMs,
+            @Value("${billing.service.keep-alive-timeout-ms:10000}") long keepAliveTimeoutMs,
+            @Value("${billing.service.idle-timeout-ms:300000}") long idleTimeoutMs,
+            @Value("${billing.service.shutdown-timeout-ms:5000}") long shutdownTimeoutMs,
+            @Value("${billing.service.deadline-ms:2000}") long deadlineMs,
+            @Value("${billing.service.async.max-in-flight:100}") int asyncMaxInFlight,
+            @Value("${billing.service.batch.max-in-flight:64}") int batchMaxInFlight,
+            @Value("${billing.service.stream.enabled:true}") boolean streamEnabled,
+            @Value("${billing.service.stream.window-ms:5}") long streamWindowMs,
+            @Value("${billing.service.stream.max-batch-size:500}") int streamMaxBatchSize,
+            @Value("${billing.service.stream.deadline-ms:10000}") long streamDeadlineMs,
+            @Value("${billing.service.circuit-breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${billing.service.circuit-breaker.open-duration-ms:10000}") long openDurationMs,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            MeterRegistry meterRegistry
     ){
 
-        log.info("Connecting to billing grpc at {}:{}",serverAddress,serverPort);
+        // dns:/// re-resolves when a connection drops (billingservice closes them after grpc.server.max-connection-age),
+        // so instances added behind the name are picked up
+        String channelTarget = target.isBlank() ? "dns:///" + serverAddress + ":" + serverPort : target;
+        log.info("Connecting to billing grpc at {} ({})", channelTarget, loadBalancingPolicy);
 
-        ManagedChannel channel = ManagedChannelBuilder
-                .forAddress(serverAddress,serverPort)
-                .usePlaintext().build();
+        ManagedChannelBuilder<?> channelBuilder = ManagedChannelBuilder
+                .forTarget(channelTarget)
+                .defaultLoadBalancingPolicy(loadBalancingPolicy)
+                // pings find a connection that died silently (NAT, load balancer timeouts) before a call does
+                .keepAliveTime(keepAliveMs, TimeUnit.MILLISECONDS)
+                .keepAliveTimeout(keepAliveTimeoutMs, TimeUnit.MILLISECONDS)
+                .idleTimeout(idleTimeoutMs, TimeUnit.MILLISECONDS)
+                .intercept(new BillingChannelMetrics(meterRegistry))
+                .usePlaintext();
+        if (virtualThreads) {
+            // response callbacks (and the retry bookkeeping chained on them) run here instead of grpc's cached pool
+            callbackExecutor = Executors.newVirtualThreadPerTaskExecutor();
+            channelBuilder.executor(callbackExecutor);
+        } else {
+            callbackExecutor = null;
+        }
+        channel = channelBuilder.build();
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
 
         blockingStub = BillingServiceGrpc.newBlockingStub(channel);
+        futureStub = BillingServiceGrpc.newFutureStub(channel);
+        asyncStub = BillingServiceGrpc.newStub(channel);
+        this.deadlineMs = deadlineMs;
+        this.streamEnabled = streamEnabled;
+        this.streamDeadlineMs = streamDeadlineMs;
+        this.batcher = new BillingRequestBatcher<>(streamMaxBatchSize, Duration.ofMillis(streamWindowMs), this::sendStream);
+        this.batchMaxInFlight = batchMaxInFlight;
+        this.asyncInFlight = new Semaphore(asyncMaxInFlight);
+        this.circuitBreaker = new BillingCircuitBreaker(failureThreshold, Duration.ofMillis(openDurationMs));
+
+        this.successTimer = Timer.builder("billing.grpc.client.latency")
+                .description("Latency of CreateBillingAccount calls")
+                .tag("outcome", "success")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.failureTimer = Timer.builder("billing.grpc.client.latency")
+                .description("Latency of CreateBillingAccount calls")
+                .tag("outcome", "failure")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.circuitOpenRejections = Counter.builder("billing.grpc.client.rejected")
+                .description("Calls rejected without reaching billingservice")
+                .tag("reason", "circuit_open")
+                .register(meterRegistry);
+        this.bulkheadRejections = Counter.builder("billing.grpc.client.rejected")
+                .description("Calls rejected without reaching billingservice")
+                .tag("reason", "max_in_flight")
+                .register(meterRegistry);
+        this.streamSuccessTimer = Timer.builder("billing.grpc.client.stream.latency")
+                .description("Duration of CreateBillingAccounts streams, from the first request sent to the last result")
+                .tag("outcome", "success")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.streamFailureTimer = Timer.builder("billing.grpc.client.stream.latency")
+                .description("Duration of CreateBillingAccounts streams, from the first request sent to the last result")
+                .tag("outcome", "failure")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.streamBatchSize = DistributionSummary.builder("billing.grpc.client.stream.batch_size")
+                .description("Billing accounts requested per CreateBillingAccounts stream")
+                .register(meterRegistry);
+        Gauge.builder("billing.grpc.client.channel.state", channel, c -> c.getState(false).ordinal())
+                .description("0 connecting, 1 ready, 2 transient failure, 3 idle, 4 shutdown")
+                .register(meterRegistry);
+        Gauge.builder("billing.grpc.client.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("0 closed, 1 half open, 2 open")
+                .register(meterRegistry);
+        Gauge.builder("billing.grpc.client.in_flight", asyncInFlight, semaphore -> asyncMaxInFlight - semaphore.availablePermits())
+                .description("Async CreateBillingAccount calls waiting for an answer")
+                .register(meterRegistry);
     }
 
     public BillingResponse createBillingAccount(String patiendId, String name, String email){
-        BillingRequest request =  BillingRequest.newBuilder()
-                .setPatientId(patiendId)
-                .setName(name)
-                .setEmail(email)
-                .build();
+        BillingRequest request = toBillingRequest(patiendId, name, email);
+
+        if (!circuitBreaker.tryAcquirePermission()) {
+            circuitOpenRejections.increment();
+            throw new BillingUnavailableException("Billing service circuit is open");
+        }
+
+        long start = System.nanoTime();
+        try {
+            BillingResponse response = blockingStub
+                    .withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS)
+                    .createBillingAccount(request);
+            onCallSuccess(start);
+
+            log.info("Received response from billin service via GRPC:{}",response);
+
+            return response;
+        } catch (StatusRuntimeException e) {
+            onCallFailure(start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Non blocking variant for the request path. Calls are shed (failed future, nothing sent) when the circuit is
+     * open or {@code billing.service.async.max-in-flight} calls are already outstanding, so a slow billingservice
+     * cannot pile up work here.
+     */
+    public CompletableFuture<BillingResponse> createBillingAccountAsync(BillingRequest request){
+        if (!circuitBreaker.tryAcquirePermission()) {
+            circuitOpenRejections.increment();
+            return CompletableFuture.failedFuture(new BillingUnavailableException("Billing service circuit is open"));
+        }
+        if (!asyncInFlight.tryAcquire()) {
+            // the permit from the breaker was not used for a real call
+            circuitBreaker.onIgnored();
+            bulkheadRejections.increment();
+            return CompletableFuture.failedFuture(new BillingUnavailableException("Too many billing calls in flight"));
+        }
+
+        CompletableFuture<BillingResponse> response = streamEnabled ? enqueue(request) : call(request);
+        response.whenComplete((result, ex) -> asyncInFlight.release());
+        return response;
+    }
+
+    /**
+     * Requests the accounts over CreateBillingAccounts streams shared with any other calls made at the same time,
+     * or with {@code billing.service.stream.enabled=false} as concurrent unary calls, keeping at most
+     * {@code batchMaxInFlight} outstanding. Futures are returned in request order.
+     */
+    public List<CompletableFuture<BillingResponse>> createBillingAccounts(List<BillingRequest> requests){
+        if (streamEnabled) {
+            List<CompletableFuture<BillingResponse>> responses = new ArrayList<>(requests.size());
+            for (BillingRequest request : requests) {
+                if (!circuitBreaker.tryAcquirePermission()) {
+                    circuitOpenRejections.increment();
+                    responses.add(CompletableFuture.failedFuture(new BillingUnavailableException("Billing service circuit is open")));
+                    continue;
+                }
+                responses.add(enqueue(request));
+            }
+            log.info("Queued {} billing account requests for streaming via GRPC", requests.size());
+            return responses;
+        }
+
+        Semaphore inFlight = new Semaphore(batchMaxInFlight);
+        List<CompletableFuture<BillingResponse>> responses = new ArrayList<>(requests.size());
+
+        for (BillingRequest request : requests) {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                circuitOpenRejections.increment();
+                responses.add(CompletableFuture.failedFuture(new BillingUnavailableException("Billing service circuit is open")));
+                continue;
+            }
+
+            inFlight.acquireUninterruptibly();
+            CompletableFuture<BillingResponse> response = call(request);
+            response.whenComplete((result, ex) -> inFlight.release());
+            responses.add(response);
+        }
+
+        log.info("Sent {} billing account requests via GRPC", requests.size());
+        return responses;
+    }
+
+    public BillingCircuitBreaker.State getCircuitState(){
+        return circuitBreaker.getState();
+    }
+
+    // caller must hold a breaker permit
+    private CompletableFuture<BillingResponse> call(BillingRequest request){
+        long start = System.nanoTime();
+        CompletableFuture<BillingResponse> response = new CompletableFuture<>();
 
-        BillingResponse response = blockingStub.createBillingAccount(request);
+        Futures.addCallback(futureStub
+                .withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS)
+                .createBillingAccount(request), new FutureCallback<>() {
+            @Override
+            public void onSuccess(BillingResponse result) {
+                onCallSuccess(start);
+                response.complete(result);
+            }
 
-        log.info("Received response from billin service via GRPC:{}",response);
+            @Override
+            public void onFailure(Throwable t) {
+                onCallFailure(start, t);
+                response.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
 
         return response;
     }
+
+    private CompletableFuture<BillingResponse> enqueue(BillingRequest request){
+        StreamedRequest streamed = new StreamedRequest(requestIds.incrementAndGet(), request, new CompletableFuture<>());
+        batcher.submit(streamed);
+        return streamed.response();
+    }
+
+    // one stream per batch. Requests are written only while the transport can take them (isReady), results
+    // complete the matching futures as they arrive. The breaker sees one outcome per stream
+    private void sendStream(List<StreamedRequest> batch){
+        long start = System.nanoTime();
+        streamBatchSize.record(batch.size());
+        Map<Long, StreamedRequest> outstanding = new ConcurrentHashMap<>(batch.size() * 2);
+        batch.forEach(streamed -> outstanding.put(streamed.id(), streamed));
+
+        asyncStub.withDeadlineAfter(streamDeadlineMs, TimeUnit.MILLISECONDS)
+                .createBillingAccounts(new ClientResponseObserver<BillingBatchRequest, BillingBatchResult>() {
+                    private ClientCallStreamObserver<BillingBatchRequest> requestStream;
+                    private int sent;
+
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<BillingBatchRequest> requestStream) {
+                        this.requestStream = requestStream;
+                        requestStream.setOnReadyHandler(this::sendWhileReady);
+                    }
+
+                    // onReady callbacks of a call are serialized, sent needs no further guarding
+                    private void sendWhileReady(){
+                        while (sent < batch.size() && requestStream.isReady()) {
+                            StreamedRequest streamed = batch.get(sent++);
+                            requestStream.onNext(BillingBatchRequest.newBuilder()
+                                    .setRequestId(streamed.id())
+                                    .setRequest(streamed.request())
+                                    .build());
+                        }
+                        if (sent == batch.size()) {
+                            sent++;
+                            requestStream.onCompleted();
+                        }
+                    }
+
+                    @Override
+                    public void onNext(BillingBatchResult result) {
+                        StreamedRequest streamed = outstanding.remove(result.getRequestId());
+                        if (streamed == null) {
+                            return;
+                        }
+                        if (result.hasResponse()) {
+                            streamed.response().complete(result.getResponse());
+                        } else {
+                            streamed.response().completeExceptionally(Status.fromCodeValue(result.getError().getCode())
+                                    .withDescription(result.getError().getMessage())
+                                    .asRuntimeException());
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        onStreamFinished(start, t);
+                        outstanding.values().forEach(streamed -> streamed.response().completeExceptionally(t));
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        onStreamFinished(start, null);
+                        outstanding.values().forEach(streamed -> streamed.response().completeExceptionally(
+                                Status.INTERNAL.withDescription("No result for billing request").asRuntimeException()));
+                    }
+                });
+    }
+
+    private void onStreamFinished(long start, Throwable t){
+        if (t == null) {
+            streamSuccessTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            circuitBreaker.onSuccess();
+            return;
+        }
+        streamFailureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (BREAKER_FAILURES.contains(Status.fromThrowable(t).getCode())) {
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onSuccess();
+        }
+    }
+
+    private void onCallSuccess(long start){
+        successTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        circuitBreaker.onSuccess();
+    }
+
+    private void onCallFailure(long start, Throwable t){
+        failureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (BREAKER_FAILURES.contains(Status.fromThrowable(t).getCode())) {
+            circuitBreaker.onFailure();
+        } else {
+            // billingservice answered, so as far as the breaker is concerned it is healthy
+            circuitBreaker.onSuccess();
+        }
+    }
+
+    /**
+     * Sends what the batcher still holds, then lets the calls already started finish (up to
+     * {@code billing.service.shutdown-timeout-ms}) before the connections are closed.
+     */
+    @PreDestroy
+    public void shutdown(){
+        batcher.shutdown();
+        channel.shutdown();
+        try {
+            if (!channel.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+                log.warn("Billing grpc calls still open after {} ms, cancelling them", shutdownTimeoutMs);
+                channel.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            channel.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (callbackExecutor != null) {
+            callbackExecutor.shutdown();
+        }
+    }
+
+    public static BillingRequest toBillingRequest(String patientId, String name, String email){
+        return BillingRequest.newBuilder()
+                .setPatientId(patientId)
+                .setName(name)
+                .setEmail(email)
+                .build();
+    }
+
+    private record StreamedRequest(long id, BillingRequest request, CompletableFuture<BillingResponse> response) {
+    }
 }
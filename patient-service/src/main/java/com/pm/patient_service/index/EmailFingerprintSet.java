@@ -0,0 +1,124 @@
+package com.pm.patient_service.index;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Open addressing set of 64-bit email fingerprints, about 16 bytes per email instead of a String plus map node.
+ * Distinct emails can share a fingerprint, so removing one may make the other look absent; callers must
+ * tolerate that (the unique constraint on patient.email still catches it).
+ */
+class EmailFingerprintSet {
+
+    private static final long EMPTY = 0L;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long[] slots;
+    private int size;
+
+    EmailFingerprintSet(int expectedSize) {
+        slots = new long[tableSizeFor(expectedSize)];
+    }
+
+    boolean contains(long fingerprint) {
+        long key = nonEmpty(fingerprint);
+        lock.readLock().lock();
+        try {
+            long[] table = slots;
+            int mask = table.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                long current = table[i];
+                if (current == key) return true;
+                if (current == EMPTY) return false;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void add(long fingerprint) {
+        long key = nonEmpty(fingerprint);
+        lock.writeLock().lock();
+        try {
+            if ((size + 1) * 2 > slots.length) {
+                resize(slots.length * 2);
+            }
+            if (insert(slots, key)) {
+                size++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long fingerprint) {
+        long key = nonEmpty(fingerprint);
+        lock.writeLock().lock();
+        try {
+            long[] table = slots;
+            int mask = table.length - 1;
+            int i = slot(key, mask);
+            while (table[i] != key) {
+                if (table[i] == EMPTY) return;
+                i = (i + 1) & mask;
+            }
+
+            // backward shift deletion keeps probe chains intact without tombstones
+            int hole = i;
+            for (int j = (hole + 1) & mask; table[j] != EMPTY; j = (j + 1) & mask) {
+                int home = slot(table[j], mask);
+                boolean canMove = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+                if (canMove) {
+                    table[hole] = table[j];
+                    hole = j;
+                }
+            }
+            table[hole] = EMPTY;
+            size--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] resized = new long[capacity];
+        for (long key : slots) {
+            if (key != EMPTY) {
+                insert(resized, key);
+            }
+        }
+        slots = resized;
+    }
+
+    private static boolean insert(long[] table, long key) {
+        int mask = table.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            if (table[i] == key) return false;
+            if (table[i] == EMPTY) {
+                table[i] = key;
+                return true;
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    private static long nonEmpty(long fingerprint) {
+        return fingerprint == EMPTY ? 1L : fingerprint;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize * 2, 16) - 1) << 1;
+        return Math.max(capacity, 16);
+    }
+}
@@ -0,0 +1,9 @@
+package com.pm.patient_service.index;
+
+import java.util.UUID;
+
+/**
+ * The slice of a patient the in-memory indexes need, loaded with a projection query when warming.
+ */
+public record IndexedPatient(UUID id, String name, String email) {
+}
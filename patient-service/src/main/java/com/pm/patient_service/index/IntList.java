@@ -0,0 +1,49 @@
+package com.pm.patient_service.index;
+
+import java.util.Arrays;
+
+/**
+ * Growable int array, used for posting lists without boxing every doc id.
+ */
+class IntList {
+
+    private int[] values;
+    private int size;
+
+    IntList(int initialCapacity) {
+        values = new int[Math.max(initialCapacity, 2)];
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1) + 1);
+        }
+        values[size++] = value;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // values are appended in increasing doc id order, so the list is sorted.
+    // Index of the first value >= target at or after from, size if there is none. Gallops from `from`, so a caller
+    // seeking increasing targets pays for the distance moved rather than a search of the whole list each time
+    int seek(int from, int target) {
+        if (from >= size || values[from] >= target) {
+            return from;
+        }
+        int low = from;
+        int step = 1;
+        while (low + step < size && values[low + step] < target) {
+            low += step;
+            step <<= 1;
+        }
+        int high = Math.min(low + step, size);
+        int found = Arrays.binarySearch(values, low + 1, high, target);
+        return found >= 0 ? found : -found - 1;
+    }
+}
@@ -0,0 +1,86 @@
+package com.pm.patient_service.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * In-process membership index of patient emails, used to skip the uniqueness query when an email is
+ * definitely new. A miss is definite, a hit only means "ask the database". Until the index is warmed
+ * every lookup is a hit. Writes on other replicas are not seen here; the unique constraint on
+ * {@code patient.email} remains the final arbiter for those and for concurrent creates.
+ */
+@Component
+public class PatientEmailIndex {
+
+    private final EmailFingerprintSet fingerprints;
+    private volatile boolean ready;
+
+    private final Counter skippedLookups;
+    private final Counter databaseLookups;
+
+    public PatientEmailIndex(@Value("${patient.email-index.expected-size:100000}") int expectedSize,
+                             MeterRegistry meterRegistry) {
+        this.fingerprints = new EmailFingerprintSet(expectedSize);
+
+        this.skippedLookups = Counter.builder("patient.email_index.lookups")
+                .description("Email uniqueness checks answered by the in-memory index")
+                .tag("result", "skipped_db")
+                .register(meterRegistry);
+        this.databaseLookups = Counter.builder("patient.email_index.lookups")
+                .description("Email uniqueness checks answered by the in-memory index")
+                .tag("result", "checked_db")
+                .register(meterRegistry);
+        Gauge.builder("patient.email_index.size", fingerprints, EmailFingerprintSet::size)
+                .register(meterRegistry);
+    }
+
+    // called by PatientIndexWarmer once every existing email has been added
+    void markReady(){
+        ready = true;
+    }
+
+    /**
+     * @return false only if no patient can have this email, true if the database has to be asked
+     */
+    public boolean mightContain(String email){
+        if (!ready || email == null || fingerprints.contains(fingerprint(email))) {
+            databaseLookups.increment();
+            return true;
+        }
+        skippedLookups.increment();
+        return false;
+    }
+
+    public void add(String email){
+        if (email != null) {
+            fingerprints.add(fingerprint(email));
+        }
+    }
+
+    public void remove(String email){
+        if (email != null) {
+            fingerprints.remove(fingerprint(email));
+        }
+    }
+
+    // FNV-1a over the normalized email followed by a murmur3 finalizer, the set indexes by the low bits
+    static long fingerprint(String email){
+        String normalized = email.trim().toLowerCase(Locale.ROOT);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash ^= normalized.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
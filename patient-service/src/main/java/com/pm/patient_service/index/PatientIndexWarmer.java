@@ -0,0 +1,46 @@
+package com.pm.patient_service.index;
+
+import com.pm.patient_service.repository.PatientRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Fills the in-memory patient indexes from one streamed pass over the patient table at startup. The app is already
+ * taking writes by then; {@link PatientSearchIndex} skips rows of patients written meanwhile. Stale emails only cost
+ * the email index a database lookup.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PatientIndexWarmer {
+
+    private final PatientRepository patientRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final PatientEmailIndex patientEmailIndex;
+    private final PatientSearchIndex patientSearchIndex;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm(){
+        long start = System.currentTimeMillis();
+        AtomicLong count = new AtomicLong();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<IndexedPatient> patients = patientRepository.streamAllForIndexing()) {
+                patients.forEach(patient -> {
+                    patientEmailIndex.add(patient.email());
+                    patientSearchIndex.indexIfUnwritten(patient.id(), patient.name(), patient.email());
+                    count.incrementAndGet();
+                });
+            }
+        });
+        patientEmailIndex.markReady();
+        patientSearchIndex.markReady();
+        log.info("Patient indexes warmed with {} patients in {} ms", count, System.currentTimeMillis() - start);
+    }
+}
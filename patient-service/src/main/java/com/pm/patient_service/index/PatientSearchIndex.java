@@ -0,0 +1,445 @@
+package com.pm.patient_service.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-process trigram inverted index over patient names and the local part of their emails, for search as you
+ * type. Words are padded like pg_trgm ("  john ") so leading trigrams favour prefixes, and a patient matches
+ * when it shares at least {@code patient.search.min-similarity} of the query's trigrams, which tolerates a typo
+ * or two. Exact prefixes of the whole name or email rank first. A short query with a typo shares too few trigrams
+ * ("jhon" and "john" only share "  j"), so when that leaves the page short, patients whose name words are within an
+ * edit or two of every query word fill it, ranked below the trigram matches.
+ * <p>
+ * Documents are scanned oldest first and equal scores keep that order, which lets a query stop as soon as its page
+ * is full of perfect matches. A query walks at most {@code patient.search.max-candidates} documents in total, so one
+ * made of very common trigrams stays bounded on a large index at the cost of missing newer matches.
+ * <p>
+ * Updates append a new document and tombstone the old one; the index is rebuilt from the live documents once
+ * tombstones outnumber them. Like {@link PatientEmailIndex} it only sees this replica's writes plus the patient
+ * events from the others, so results can briefly lag writes made elsewhere.
+ * <p>
+ * Writes are already served while {@link PatientIndexWarmer} streams the table, so a row it read may be older than
+ * a write indexed meanwhile. Patients written before the index is ready are remembered and the warmer skips them.
+ */
+@Component
+@Slf4j
+public class PatientSearchIndex {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final int MIN_TOMBSTONES_BEFORE_REBUILD = 10_000;
+    private static final double WHOLE_PREFIX_BONUS = 1.0;
+    private static final double WORD_PREFIX_BONUS = 0.5;
+
+    private final double minSimilarity;
+    private final int maxCandidates;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // doc id -> patient, doc ids are only ever appended so posting lists stay sorted
+    private List<UUID> patientIds = new ArrayList<>();
+    private List<String> names = new ArrayList<>();
+    private List<String> emails = new ArrayList<>();
+    // words of each name, split once here rather than on every query that scores the doc
+    private List<String[]> nameWords = new ArrayList<>();
+    private BitSet deleted = new BitSet();
+    private Map<UUID, Integer> docsByPatient = new HashMap<>();
+    private Map<Long, IntList> postings = new HashMap<>();
+    // patients indexed or removed by a write before the index was ready, guarded by the write lock
+    private final Set<UUID> writtenWhileWarming = new HashSet<>();
+    private volatile boolean ready;
+
+    public PatientSearchIndex(@Value("${patient.search.min-similarity:0.5}") double minSimilarity,
+                              @Value("${patient.search.max-candidates:50000}") int maxCandidates,
+                              MeterRegistry meterRegistry) {
+        this.minSimilarity = minSimilarity;
+        this.maxCandidates = maxCandidates;
+        Gauge.builder("patient.search_index.size", this, PatientSearchIndex::size)
+                .description("Patients in the in-memory search index")
+                .register(meterRegistry);
+    }
+
+    public boolean isReady(){
+        return ready;
+    }
+
+    void markReady(){
+        lock.writeLock().lock();
+        try {
+            ready = true;
+            writtenWhileWarming.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size(){
+        lock.readLock().lock();
+        try {
+            return docsByPatient.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void index(UUID patientId, String name, String email){
+        index(patientId, name, email, false);
+    }
+
+    // for the warmer: a row streamed from the table, only indexed if no write for the patient came first
+    void indexIfUnwritten(UUID patientId, String name, String email){
+        index(patientId, name, email, true);
+    }
+
+    private void index(UUID patientId, String name, String email, boolean fromWarmer){
+        String normalizedName = normalize(name);
+        String normalizedEmail = normalize(email);
+
+        lock.writeLock().lock();
+        try {
+            if (fromWarmer) {
+                if (writtenWhileWarming.contains(patientId)) {
+                    return;
+                }
+            } else if (!ready) {
+                writtenWhileWarming.add(patientId);
+            }
+            Integer existing = docsByPatient.get(patientId);
+            if (existing != null) {
+                if (names.get(existing).equals(normalizedName) && emails.get(existing).equals(normalizedEmail)) {
+                    return;
+                }
+                deleted.set(existing);
+            }
+            addDocument(patientId, normalizedName, normalizedEmail);
+            rebuildIfFragmented();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID patientId){
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                // or the warmer would add a deleted patient back from a row it read before the delete
+                writtenWhileWarming.add(patientId);
+            }
+            Integer existing = docsByPatient.remove(patientId);
+            if (existing != null) {
+                deleted.set(existing);
+                rebuildIfFragmented();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return ids of the best matching patients, best first, at most {@code limit} of them
+     */
+    public List<UUID> search(String query, int limit){
+        String normalizedQuery = normalize(query);
+        // the domain is not indexed, "john.doe@gm" searches for john.doe
+        int at = normalizedQuery.indexOf('@');
+        long[] queryTrigrams = trigrams(at >= 0 ? normalizedQuery.substring(0, at) : normalizedQuery, at < 0);
+        if (queryTrigrams.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        String[] queryWords = words(normalizedQuery);
+        int required = Math.max(1, (int) Math.ceil(queryTrigrams.length * minSimilarity));
+        // a name word starting with a query word has all of that word's open trigrams. Not with an email query,
+        // the domain's words give no trigrams
+        int sharedForWordBonus = at >= 0 ? 0 : queryTrigrams.length;
+        for (String queryWord : queryWords) {
+            sharedForWordBonus = Math.min(sharedForWordBonus, trigrams(queryWord, true).length);
+        }
+        int wordBonusShared = sharedForWordBonus;
+
+        lock.readLock().lock();
+        try {
+            IntList[] lists = new IntList[queryTrigrams.length];
+            for (int i = 0; i < queryTrigrams.length; i++) {
+                lists[i] = postings.getOrDefault(queryTrigrams[i], new IntList(0));
+            }
+            Arrays.sort(lists, Comparator.comparingInt(IntList::size));
+
+            PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, Hit.WORST_FIRST);
+            BitSet matched = new BitSet();
+            int visited = scan(lists, required, maxCandidates, (doc, shared) -> {
+                matched.set(doc);
+                offer(top, limit, doc, (double) shared / queryTrigrams.length + prefixBonus(doc, normalizedQuery, queryWords));
+                return sharedToGetIn(top, limit, required, queryTrigrams.length, wordBonusShared);
+            });
+
+            if (top.size() < limit && queryWords.length > 0) {
+                // typo fallback: any doc sharing a trigram is a candidate, it has to be close on every word.
+                // Scores stay below min-similarity, so these never outrank a trigram match
+                scan(lists, 1, maxCandidates - visited, (doc, shared) -> {
+                    if (!matched.get(doc) && withinTypos(nameWords.get(doc), queryWords)) {
+                        offer(top, limit, doc, (double) shared / queryTrigrams.length);
+                    }
+                    // the score is the similarity alone, a later doc (losing ties) needs more trigrams than the worst hit
+                    return top.size() < limit ? 1 : (int) Math.floor(top.peek().score() * queryTrigrams.length) + 1;
+                });
+            }
+
+            List<UUID> result = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                result.add(patientIds.get(top.poll().doc()));
+            }
+            return result.reversed();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Docs come in id order and lose ties to older ones, so with a full page a later doc has to beat the worst hit.
+    // Only a doc with every query trigram can get the whole-prefix bonus, and only one with wordBonusShared the word
+    // one, which bounds the best score a doc sharing fewer trigrams can get. More than queryTrigrams once the worst
+    // hit has the best possible score
+    private static int sharedToGetIn(PriorityQueue<Hit> top, int limit, int required, int queryTrigrams, int wordBonusShared){
+        if (top.size() < limit) {
+            return required;
+        }
+        double worst = top.peek().score();
+        int shared = required;
+        for (; shared <= queryTrigrams; shared++) {
+            double bonus = shared == queryTrigrams ? WHOLE_PREFIX_BONUS : shared >= wordBonusShared ? WORD_PREFIX_BONUS : 0;
+            if ((double) shared / queryTrigrams + bonus > worst) {
+                break;
+            }
+        }
+        return shared;
+    }
+
+    // Visits every live doc in at least `required` of the lists (sorted rarest first), with the number it is in,
+    // walking at most `budget` docs. Such a doc must appear in one of the (n - required + 1) rarest lists, so only
+    // those are walked; the rest are probed, and probing stops once the doc can't reach `required`. The visitor
+    // returns how many trigrams later docs need, which can only grow. Returns the docs walked
+    private int scan(IntList[] lists, int required, int budget, Candidates candidates){
+        int probeCount = lists.length - required + 1;
+        // walk positions for the first probeCount lists, seek positions for the rest
+        int[] cursors = new int[lists.length];
+        int needed = required;
+        int visited = 0;
+        for (; visited < budget; visited++) {
+            int doc = Integer.MAX_VALUE;
+            for (int i = 0; i < probeCount; i++) {
+                if (cursors[i] < lists[i].size()) {
+                    doc = Math.min(doc, lists[i].get(cursors[i]));
+                }
+            }
+            if (doc == Integer.MAX_VALUE) {
+                break;
+            }
+
+            int shared = 0;
+            for (int i = 0; i < probeCount; i++) {
+                if (cursors[i] < lists[i].size() && lists[i].get(cursors[i]) == doc) {
+                    shared++;
+                    cursors[i]++;
+                }
+            }
+            if (deleted.get(doc)) {
+                continue;
+            }
+            for (int i = probeCount; i < lists.length && shared + lists.length - i >= needed; i++) {
+                cursors[i] = lists[i].seek(cursors[i], doc);
+                if (cursors[i] < lists[i].size() && lists[i].get(cursors[i]) == doc) {
+                    shared++;
+                }
+            }
+            if (shared >= needed) {
+                needed = Math.max(needed, candidates.accept(doc, shared));
+                if (needed > lists.length) {
+                    break;
+                }
+            }
+        }
+        return visited;
+    }
+
+    private static void offer(PriorityQueue<Hit> top, int limit, int doc, double score){
+        if (top.size() == limit && score <= top.peek().score()) {
+            return;
+        }
+        top.add(new Hit(doc, score));
+        if (top.size() > limit) {
+            top.poll();
+        }
+    }
+
+    private double prefixBonus(int doc, String query, String[] queryWords){
+        if (names.get(doc).startsWith(query) || emails.get(doc).startsWith(query)) {
+            return WHOLE_PREFIX_BONUS;
+        }
+        for (String nameWord : nameWords.get(doc)) {
+            for (String queryWord : queryWords) {
+                if (nameWord.startsWith(queryWord)) {
+                    return WORD_PREFIX_BONUS;
+                }
+            }
+        }
+        return 0;
+    }
+
+    // every query word within its edit budget of some name word; the last one is still being typed,
+    // so it is compared with the start of the name word
+    static boolean withinTypos(String[] nameWords, String[] queryWords){
+        for (int q = 0; q < queryWords.length; q++) {
+            String queryWord = queryWords[q];
+            int maxEdits = queryWord.length() <= 2 ? 0 : queryWord.length() <= 5 ? 1 : 2;
+            boolean found = false;
+            for (int w = 0; w < nameWords.length && !found; w++) {
+                String nameWord = nameWords[w];
+                if (q == queryWords.length - 1 && nameWord.length() > queryWord.length()) {
+                    nameWord = nameWord.substring(0, queryWord.length());
+                }
+                found = editDistanceAtMost(queryWord, nameWord, maxEdits);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // optimal string alignment distance (a swap of neighbours is one edit), giving up once a row exceeds max
+    static boolean editDistanceAtMost(String a, String b, int max){
+        if (Math.abs(a.length() - b.length()) > max) {
+            return false;
+        }
+        int[] beforePrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int distance = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    distance = Math.min(distance, beforePrevious[j - 2] + 1);
+                }
+                current[j] = distance;
+                rowMin = Math.min(rowMin, distance);
+            }
+            if (rowMin > max) {
+                return false;
+            }
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()] <= max;
+    }
+
+    private void addDocument(UUID patientId, String normalizedName, String normalizedEmail){
+        int doc = patientIds.size();
+        patientIds.add(patientId);
+        names.add(normalizedName);
+        emails.add(normalizedEmail);
+        nameWords.add(words(normalizedName));
+        docsByPatient.put(patientId, doc);
+
+        int at = normalizedEmail.indexOf('@');
+        String emailLocalPart = at >= 0 ? normalizedEmail.substring(0, at) : normalizedEmail;
+        for (long trigram : trigrams(normalizedName + " " + emailLocalPart, false)) {
+            postings.computeIfAbsent(trigram, key -> new IntList(4)).add(doc);
+        }
+    }
+
+    private void rebuildIfFragmented(){
+        int tombstones = patientIds.size() - docsByPatient.size();
+        if (tombstones < MIN_TOMBSTONES_BEFORE_REBUILD || tombstones < docsByPatient.size()) {
+            return;
+        }
+
+        List<UUID> oldIds = patientIds;
+        List<String> oldNames = names;
+        List<String> oldEmails = emails;
+        BitSet oldDeleted = deleted;
+
+        patientIds = new ArrayList<>(docsByPatient.size());
+        names = new ArrayList<>(docsByPatient.size());
+        emails = new ArrayList<>(docsByPatient.size());
+        nameWords = new ArrayList<>(docsByPatient.size());
+        deleted = new BitSet();
+        docsByPatient = new HashMap<>();
+        postings = new HashMap<>();
+        for (int doc = 0; doc < oldIds.size(); doc++) {
+            if (!oldDeleted.get(doc)) {
+                addDocument(oldIds.get(doc), oldNames.get(doc), oldEmails.get(doc));
+            }
+        }
+        log.info("Patient search index rebuilt, dropped {} stale entries", tombstones);
+    }
+
+    static String normalize(String text){
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.trim(), Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static String[] words(String normalized){
+        return Arrays.stream(NON_WORD.split(normalized))
+                .filter(word -> !word.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    // distinct trigrams of every word, each word padded with two leading blanks and one trailing.
+    // The last word of a query is usually still being typed, so it is left open at the end.
+    static long[] trigrams(String normalized, boolean openLastWord){
+        String[] words = words(normalized);
+        long[] result = new long[16];
+        int count = 0;
+        for (int w = 0; w < words.length; w++) {
+            String padded = openLastWord && w == words.length - 1 ? "  " + words[w] : "  " + words[w] + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+            }
+        }
+        return Arrays.stream(result, 0, count).distinct().toArray();
+    }
+
+    @FunctionalInterface
+    private interface Candidates {
+        // returns the shared trigrams a later doc needs to be of interest, more than the query has to stop
+        int accept(int doc, int shared);
+    }
+
+    private record Hit(int doc, double score) {
+        // head of the queue is the hit to drop first: lowest score, then the most recently indexed
+        static final Comparator<Hit> WORST_FIRST = Comparator.comparingDouble(Hit::score)
+                .thenComparing(Hit::doc, Comparator.reverseOrder());
+    }
+}
@@ -1,32 +1,86 @@
 package com.pm.patient_service.kafka;
 
-import com.pm.patient_service.model.Patient;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
-import patient.events.PatientEvent;
 
-@RequiredArgsConstructor
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends patient events. Batching, compression and retries are the producer's (spring.kafka.producer.*), this records
+ * how long each event took to be acked and why the ones that weren't failed. The callbacks run on the producer's
+ * network thread, so they only update meters.
+ */
 @Service
-@Slf4j
 public class KafkaProducer {
 
+    public static final String PATIENT_TOPIC = "patient";
+
     private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Timer ackedTimer;
+    private final Timer failedTimer;
 
-    public void sendMessage(Patient patient){
-        PatientEvent event = PatientEvent.newBuilder()
-                .setPatientId(patient.getId().toString())
-                .setName(patient.getName())
-                .setEmail(patient.getEmail())
-                .setEventType("PATIENT_CREATED")
-                .build();
+    public KafkaProducer(KafkaTemplate<String, byte[]> kafkaTemplate, MeterRegistry meterRegistry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.meterRegistry = meterRegistry;
+        this.ackedTimer = Timer.builder("patient.events.send")
+                .description("Time from handing a patient event to the producer until the broker acked it or it failed")
+                .tag("outcome", "acked")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.failedTimer = Timer.builder("patient.events.send")
+                .description("Time from handing a patient event to the producer until the broker acked it or it failed")
+                .tag("outcome", "failed")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 
-        try{
+    // keyed by patient id so every event of a patient lands on the same partition, in order
+    public CompletableFuture<SendResult<String, byte[]>> send(String patientId, byte[] payload){
+        long start = System.nanoTime();
+        CompletableFuture<SendResult<String, byte[]>> send;
+        try {
+            send = kafkaTemplate.send(PATIENT_TOPIC, patientId, payload);
+        } catch (RuntimeException e) {
+            // e.g. no metadata within max.block.ms
+            onFailure(start, e);
+            throw e;
+        }
+        send.whenComplete((result, ex) -> {
+            if (ex == null) {
+                ackedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            } else {
+                onFailure(start, ex);
+            }
+        });
+        return send;
+    }
+
+    /**
+     * Sends what the producer is still holding back for linger.ms. For callers that hand over everything they have
+     * and then wait for the acks, so batches fill up without paying the linger on top.
+     */
+    public void flush(){
+        kafkaTemplate.flush();
+    }
 
-            kafkaTemplate.send("patient",event.toByteArray());
-        }catch (Exception e){
-            log.error("Error sending the PatientCreated event:{} ",event);
+    private void onFailure(long start, Throwable ex){
+        failedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        // KafkaProducerException wraps what the client reported
+        if (cause.getCause() != null) {
+            cause = cause.getCause();
         }
+        Counter.builder("patient.events.send.errors")
+                .description("Patient events the producer failed to deliver, by the client's exception")
+                .tag("exception", cause.getClass().getSimpleName())
+                .register(meterRegistry)
+                .increment();
     }
 }
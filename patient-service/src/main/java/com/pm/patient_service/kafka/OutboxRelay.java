@@ -0,0 +1,221 @@
+package com.pm.patient_service.kafka;
+
+import com.pm.patient_service.model.OutboxDeadLetter;
+import com.pm.patient_service.model.OutboxEvent;
+import com.pm.patient_service.repository.OutboxDeadLetterRepository;
+import com.pm.patient_service.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.RetriableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains the outbox table to Kafka in the background, so the request path never waits on the broker.
+ * Delivery is at least once: a row is only deleted after its send was acked, and a patient's next event is only
+ * sent once the one before it was acked, so a failed event holds back the later events of the same patient until the
+ * next run. A batch gets send-timeout-ms in total, and the first send the producer refuses ends it.
+ * <p>
+ * An event the broker rejected max-attempts times with an error that isn't retriable (too large, not authorized, ...)
+ * is moved to the dead-letter table so it stops holding back the patient's later events. Timeouts and broker outages
+ * never dead-letter anything, those events wait for the broker however long it takes.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxDeadLetterRepository outboxDeadLetterRepository;
+    private final KafkaProducer kafkaProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long sendTimeoutMs;
+    private final int maxAttempts;
+    private final Counter deadLettered;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       OutboxDeadLetterRepository outboxDeadLetterRepository,
+                       KafkaProducer kafkaProducer,
+                       TransactionTemplate transactionTemplate,
+                       @Value("${patient.outbox.relay.batch-size:200}") int batchSize,
+                       @Value("${patient.outbox.relay.send-timeout-ms:10000}") long sendTimeoutMs,
+                       @Value("${patient.outbox.relay.max-attempts:5}") int maxAttempts,
+                       MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxDeadLetterRepository = outboxDeadLetterRepository;
+        this.kafkaProducer = kafkaProducer;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.maxAttempts = maxAttempts;
+        this.deadLettered = Counter.builder("patient.outbox.dead_lettered")
+                .description("Outbox events moved to the dead-letter table after max-attempts rejections")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${patient.outbox.relay.interval-ms:200}")
+    public void relay(){
+        RelayResult result;
+        do {
+            result = transactionTemplate.execute(status -> relayBatch());
+        } while (result != null && result.fullBatch() && result.failed() == 0);
+    }
+
+    private RelayResult relayBatch(){
+        List<OutboxEvent> events = outboxEventRepository.findNextBatchForUpdate(Limit.of(batchSize));
+        if (events.isEmpty()) {
+            return new RelayResult(false, 0);
+        }
+
+        // the row locks are held until this returns, so the whole batch shares one deadline
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        Set<String> blockedPatients = new HashSet<>();
+        List<OutboxEvent> published = new ArrayList<>(events.size());
+        List<DeadLetter> parked = new ArrayList<>();
+        List<OutboxEvent> pending = events;
+        while (!pending.isEmpty() && System.nanoTime() < deadline) {
+            // at most one event per patient in flight: the next one is only sent once the one before it was acked,
+            // a patient with several events in the batch takes several waves
+            List<OutboxEvent> wave = new ArrayList<>();
+            List<OutboxEvent> later = new ArrayList<>();
+            Set<String> inWave = new HashSet<>();
+            for (OutboxEvent event : pending) {
+                if (!blockedPatients.contains(event.getAggregateId())) {
+                    (inWave.add(event.getAggregateId()) ? wave : later).add(event);
+                }
+            }
+            if (!sendWave(wave, deadline, published, parked, blockedPatients)) {
+                break;
+            }
+            pending = later;
+        }
+
+        if (!parked.isEmpty()) {
+            outboxDeadLetterRepository.saveAll(parked.stream().map(DeadLetter::toEntity).toList());
+            deadLettered.increment(parked.size());
+        }
+        List<OutboxEvent> done = new ArrayList<>(published);
+        parked.forEach(deadLetter -> done.add(deadLetter.event()));
+        outboxEventRepository.deleteAllInBatch(done);
+
+        int failed = events.size() - done.size();
+        if (failed > 0) {
+            log.warn("Outbox relay published {} events, {} left for retry", published.size(), failed);
+        }
+        return new RelayResult(events.size() == batchSize, failed);
+    }
+
+    // false when the producer refused a send, the rest of the batch waits for the next run
+    private boolean sendWave(List<OutboxEvent> wave, long deadline, List<OutboxEvent> published,
+                             List<DeadLetter> parked, Set<String> blockedPatients){
+        // everything is handed to the producer first so the wave shares broker round trips
+        List<CompletableFuture<SendResult<String, byte[]>>> sends = new ArrayList<>(wave.size());
+        boolean refused = false;
+        for (OutboxEvent event : wave) {
+            try {
+                sends.add(kafkaProducer.send(event.getAggregateId(), event.getPayload()));
+            } catch (Exception e) {
+                // e.g. metadata not available within max.block.ms, every other send would block just as long.
+                // Nothing reached the broker, so this never counts towards dead-lettering
+                logFailure(event, e);
+                event.setAttempts(event.getAttempts() + 1);
+                refused = true;
+                break;
+            }
+        }
+        // the whole wave is in, no point waiting out linger.ms
+        kafkaProducer.flush();
+
+        for (int i = 0; i < sends.size(); i++) {
+            OutboxEvent event = wave.get(i);
+            Exception failure = awaitAck(event, sends.get(i), deadline);
+            if (failure == null) {
+                published.add(event);
+                continue;
+            }
+            event.setAttempts(event.getAttempts() + 1);
+            if (event.getAttempts() >= maxAttempts && !isRetriable(failure)) {
+                // the patient's later events go on in the next wave
+                log.error("Outbox event {} ({}) for patient {} rejected {} times, moving it to the dead-letter table",
+                        event.getId(), event.getEventType(), event.getAggregateId(), event.getAttempts());
+                parked.add(new DeadLetter(event, rootCause(failure).toString()));
+            } else {
+                // keep it, and everything after it for this patient, for the next run
+                blockedPatients.add(event.getAggregateId());
+            }
+        }
+        return !refused;
+    }
+
+    // null once acked
+    private Exception awaitAck(OutboxEvent event, CompletableFuture<SendResult<String, byte[]>> send, long deadline){
+        try {
+            send.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            logFailure(event, e);
+            return e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return e;
+        }
+    }
+
+    // timeouts, interrupts and whatever the client itself would retry: the broker is away, not refusing the event
+    private static boolean isRetriable(Exception failure){
+        if (failure instanceof TimeoutException || failure instanceof InterruptedException) {
+            return true;
+        }
+        return rootCause(failure) instanceof RetriableException;
+    }
+
+    // the producer's own exception, out of the future's and spring-kafka's wrappers
+    private static Throwable rootCause(Exception failure){
+        Throwable cause = failure;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException || cause instanceof KafkaException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private void logFailure(OutboxEvent event, Exception e){
+        log.error("Error publishing outbox event {} ({}) for patient {}, attempt {}",
+                event.getId(), event.getEventType(), event.getAggregateId(), event.getAttempts() + 1, e);
+    }
+
+    private record RelayResult(boolean fullBatch, int failed) {
+    }
+
+    private record DeadLetter(OutboxEvent event, String error) {
+        OutboxDeadLetter toEntity(){
+            return OutboxDeadLetter.builder()
+                    .id(event.getId())
+                    .aggregateId(event.getAggregateId())
+                    .eventType(event.getEventType())
+                    .payload(event.getPayload())
+                    .createdAt(event.getCreatedAt())
+                    .attempts(event.getAttempts())
+                    .failedAt(Instant.now())
+                    .error(error.length() > 1024 ? error.substring(0, 1024) : error)
+                    .build();
+        }
+    }
+}
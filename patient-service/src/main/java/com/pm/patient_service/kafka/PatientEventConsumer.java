@@ -0,0 +1,58 @@
+package com.pm.patient_service.kafka;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.pm.patient_service.cache.PatientCache;
+import com.pm.patient_service.index.PatientEmailIndex;
+import com.pm.patient_service.index.PatientSearchIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+import patient.events.PatientEvent;
+
+import java.util.UUID;
+
+/**
+ * Keeps this replica's in-memory patient state in line with writes made on other replicas.
+ * Every instance uses its own consumer group so each one sees every event, starting from the latest offset.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PatientEventConsumer {
+
+    private final PatientCache patientCache;
+    private final PatientEmailIndex patientEmailIndex;
+    private final PatientSearchIndex patientSearchIndex;
+
+    @KafkaListener(topics = KafkaProducer.PATIENT_TOPIC,
+            groupId = "patient-service-${random.uuid}",
+            properties = "auto.offset.reset=latest",
+            autoStartup = "${patient.cache.kafka-invalidation.enabled:true}")
+    public void consumeEvent(byte[] event){
+        try {
+            PatientEvent patientEvent = PatientEvent.parseFrom(event);
+            UUID patientId = UUID.fromString(patientEvent.getPatientId());
+
+            switch (patientEvent.getEventType()) {
+                case PatientEventOutbox.PATIENT_CREATED -> {
+                    patientEmailIndex.add(patientEvent.getEmail());
+                    patientSearchIndex.index(patientId, patientEvent.getName(), patientEvent.getEmail());
+                }
+                case PatientEventOutbox.PATIENT_UPDATED -> {
+                    patientCache.evict(patientId);
+                    patientEmailIndex.add(patientEvent.getEmail());
+                    patientSearchIndex.index(patientId, patientEvent.getName(), patientEvent.getEmail());
+                }
+                case PatientEventOutbox.PATIENT_DELETED -> {
+                    patientCache.evict(patientId);
+                    patientCache.evictEmail(patientEvent.getEmail());
+                    patientSearchIndex.remove(patientId);
+                }
+                default -> log.debug("Ignoring patient event of type {}", patientEvent.getEventType());
+            }
+        } catch (InvalidProtocolBufferException | IllegalArgumentException e) {
+            log.error("Error deserializing event: {} ",e.getMessage());
+        }
+    }
+}
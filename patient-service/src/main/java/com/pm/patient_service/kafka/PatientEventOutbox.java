@@ -0,0 +1,54 @@
+package com.pm.patient_service.kafka;
+
+import com.pm.patient_service.model.OutboxEvent;
+import com.pm.patient_service.model.Patient;
+import com.pm.patient_service.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import patient.events.PatientEvent;
+
+import java.time.Instant;
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class PatientEventOutbox {
+
+    public static final String PATIENT_CREATED = "PATIENT_CREATED";
+    public static final String PATIENT_UPDATED = "PATIENT_UPDATED";
+    public static final String PATIENT_DELETED = "PATIENT_DELETED";
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    // MANDATORY: an outbox row written outside the patient's transaction defeats the point
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(Patient patient, String eventType){
+        outboxEventRepository.save(toOutboxEvent(patient, eventType));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueAll(List<Patient> patients, String eventType){
+        outboxEventRepository.saveAll(patients
+                .stream()
+                .map(patient -> toOutboxEvent(patient, eventType))
+                .toList());
+    }
+
+    private OutboxEvent toOutboxEvent(Patient patient, String eventType){
+        PatientEvent event = PatientEvent.newBuilder()
+                .setPatientId(patient.getId().toString())
+                .setName(patient.getName())
+                .setEmail(patient.getEmail())
+                .setEventType(eventType)
+                .build();
+
+        return OutboxEvent.builder()
+                .aggregateId(patient.getId().toString())
+                .eventType(eventType)
+                .payload(event.toByteArray())
+                .createdAt(Instant.now())
+                .build();
+    }
+}
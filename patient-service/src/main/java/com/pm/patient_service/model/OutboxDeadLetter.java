@@ -0,0 +1,52 @@
+package com.pm.patient_service.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Outbox event the broker kept refusing, moved out of the way by {@link com.pm.patient_service.kafka.OutboxRelay}
+ * so the patient's later events can go out. Kept with the error for someone to look at and, if it still matters,
+ * put back into the outbox.
+ */
+@Entity
+@Table(name = "outbox_dead_letter")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class OutboxDeadLetter {
+
+    // the outbox event's id
+    @Id
+    private Long id;
+
+    @NotNull
+    private String aggregateId;
+
+    @NotNull
+    private String eventType;
+
+    @NotNull
+    @Column(length = 4096)
+    private byte[] payload;
+
+    @NotNull
+    private Instant createdAt;
+
+    private int attempts;
+
+    @NotNull
+    private Instant failedAt;
+
+    @Column(length = 1024)
+    private String error;
+}
@@ -0,0 +1,47 @@
+package com.pm.patient_service.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Event waiting to be published to Kafka. Written in the same transaction as the patient change
+ * it describes and deleted by {@link com.pm.patient_service.kafka.OutboxRelay} once the broker acked it.
+ */
+@Entity
+@Table(name = "outbox_event")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class OutboxEvent {
+
+    // Sequence ids give the publish order. One nextval per row, no pooling: a replica handing out ids from a block
+    // it took earlier would put a later event of a patient before an earlier one written on another replica. Writes
+    // lock the patient row before enqueueing, so a patient's events get increasing ids in commit order
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_seq", allocationSize = 1)
+    private Long id;
+
+    // patient id, also used as the record key so events of one patient stay ordered
+    @NotNull
+    private String aggregateId;
+
+    @NotNull
+    private String eventType;
+
+    @NotNull
+    @Column(length = 4096)
+    private byte[] payload;
+
+    @NotNull
+    private Instant createdAt;
+
+    private int attempts;
+}
@@ -12,6 +12,11 @@ import java.time.LocalDate;
 import java.util.UUID;
 
 @Entity
+@Table(indexes = {
+        // back the keyset pagination queries in PatientRepository
+        @Index(name = "idx_patient_registered_date_id", columnList = "registeredDate, id"),
+        @Index(name = "idx_patient_name_id", columnList = "name, id")
+})
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
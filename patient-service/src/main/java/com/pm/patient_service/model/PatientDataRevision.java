@@ -0,0 +1,25 @@
+package com.pm.patient_service.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One shard of the count of patient writes from every replica, see {@link com.pm.patient_service.cache.PatientDataVersion}.
+ */
+@Entity
+@Table(name = "patient_data_revision")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientDataRevision {
+
+    // shard number, from 1
+    @Id
+    private Long id;
+
+    private long revision;
+}
@@ -0,0 +1,43 @@
+package com.pm.patient_service.pagination;
+
+import com.pm.patient_service.exception.InvalidPageRequestException;
+import com.pm.patient_service.model.Patient;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque keyset position: the sort key and id of the last row of a page.
+ * Encoded as base64url("sortField|id|sortValue") so clients never build it themselves.
+ */
+public record PatientCursor(PatientSortField sortField, UUID id, String sortValue) {
+
+    public static PatientCursor after(Patient patient, PatientSortField sortField) {
+        String sortValue = switch (sortField) {
+            case REGISTERED_DATE -> patient.getRegisteredDate().toString();
+            case NAME -> patient.getName();
+        };
+        return new PatientCursor(sortField, patient.getId(), sortValue);
+    }
+
+    public String encode() {
+        String raw = sortField.getParamName() + "|" + id + "|" + sortValue;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PatientCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // sortValue goes last, names are allowed to contain the separator
+            String[] parts = raw.split("\\|", 3);
+            if (parts.length != 3) {
+                throw new InvalidPageRequestException("Malformed cursor");
+            }
+            return new PatientCursor(PatientSortField.fromParam(parts[0]), UUID.fromString(parts[1]), parts[2]);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("Malformed cursor");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.pm.patient_service.pagination;
+
+import com.pm.patient_service.exception.InvalidPageRequestException;
+
+import java.util.Arrays;
+
+public enum PatientSortField {
+
+    REGISTERED_DATE("registeredDate"),
+    NAME("name");
+
+    private final String paramName;
+
+    PatientSortField(String paramName) {
+        this.paramName = paramName;
+    }
+
+    public String getParamName() {
+        return paramName;
+    }
+
+    public static PatientSortField fromParam(String param) {
+        return Arrays.stream(values())
+                .filter(field -> field.paramName.equalsIgnoreCase(param))
+                .findFirst()
+                .orElseThrow(() -> new InvalidPageRequestException("Unsupported sort field '" + param + "'"));
+    }
+}
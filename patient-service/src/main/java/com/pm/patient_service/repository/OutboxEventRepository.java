@@ -0,0 +1,21 @@
+package com.pm.patient_service.repository;
+
+import com.pm.patient_service.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Plain FOR UPDATE rather than SKIP LOCKED: relays on other replicas wait for this batch instead of
+    // publishing newer events of the same patient ahead of it.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select e from OutboxEvent e order by e.id asc")
+    List<OutboxEvent> findNextBatchForUpdate(Limit limit);
+}
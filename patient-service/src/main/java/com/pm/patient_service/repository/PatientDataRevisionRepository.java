@@ -0,0 +1,19 @@
+package com.pm.patient_service.repository;
+
+import com.pm.patient_service.model.PatientDataRevision;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PatientDataRevisionRepository extends JpaRepository<PatientDataRevision, Long> {
+
+    @Modifying
+    @Query("update PatientDataRevision r set r.revision = r.revision + 1 where r.id = :id")
+    int increment(@Param("id") long id);
+
+    @Query("select coalesce(sum(r.revision), 0) from PatientDataRevision r")
+    long sumRevisions();
+}
@@ -1,11 +1,24 @@
 package com.pm.patient_service.repository;
 
+import com.pm.patient_service.index.IndexedPatient;
 import com.pm.patient_service.model.Patient;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface PatientRepository extends JpaRepository<Patient, UUID> {
@@ -13,4 +26,58 @@ public interface PatientRepository extends JpaRepository<Patient, UUID> {
 
     boolean existsByEmailAndIdNot(String email, UUID id);
 
+    // taken by updates and deletes before they enqueue their outbox event, so the event ids of one patient
+    // are drawn in the order the writes commit
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from Patient p where p.id = :id")
+    Optional<Patient> findByIdForUpdate(@Param("id") UUID id);
+
+    @Query("select p.email from Patient p where p.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    // Server side cursor for exports: rows arrive fetch-size at a time instead of as one list.
+    // Must be consumed inside a transaction and closed by the caller.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Patient p")
+    Stream<Patient> streamAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.pm.patient_service.index.IndexedPatient(p.id, p.name, p.email) from Patient p")
+    Stream<IndexedPatient> streamAllForIndexing();
+
+    // only used while the search index is still warming
+    List<Patient> findByNameStartingWithIgnoreCaseOrEmailStartingWithIgnoreCase(String name, String email, Limit limit);
+
+    // Keyset pages: each query seeks past the (sortKey, id) of the previous page's last row,
+    // so the cost per page stays the same however deep the client scrolls. Never OFFSET.
+
+    @Query("select p from Patient p order by p.registeredDate asc, p.id asc")
+    List<Patient> findFirstPageByRegisteredDate(Limit limit);
+
+    @Query("""
+            select p from Patient p
+            where p.registeredDate > :registeredDate
+               or (p.registeredDate = :registeredDate and p.id > :id)
+            order by p.registeredDate asc, p.id asc
+            """)
+    List<Patient> findPageAfterRegisteredDate(@Param("registeredDate") LocalDate registeredDate,
+                                              @Param("id") UUID id,
+                                              Limit limit);
+
+    @Query("select p from Patient p order by p.name asc, p.id asc")
+    List<Patient> findFirstPageByName(Limit limit);
+
+    @Query("""
+            select p from Patient p
+            where p.name > :name
+               or (p.name = :name and p.id > :id)
+            order by p.name asc, p.id asc
+            """)
+    List<Patient> findPageAfterName(@Param("name") String name,
+                                    @Param("id") UUID id,
+                                    Limit limit);
+
 }
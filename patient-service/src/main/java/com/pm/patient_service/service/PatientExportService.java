@@ -0,0 +1,138 @@
+package com.pm.patient_service.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.pm.patient_service.dto.PatientResponseDto;
+import com.pm.patient_service.exception.UnsupportedExportFormatException;
+import com.pm.patient_service.mapper.PatientMapper;
+import com.pm.patient_service.model.Patient;
+import com.pm.patient_service.repository.PatientRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+@Slf4j
+public class PatientExportService {
+
+    // rows written between flushes to the servlet output stream
+    private static final int FLUSH_EVERY = 500;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final PatientRepository patientRepository;
+    private final PatientMapper patientMapper;
+    private final EntityManager entityManager;
+    private final ObjectWriter jsonWriter;
+
+    public PatientExportService(PatientRepository patientRepository,
+                                PatientMapper patientMapper,
+                                EntityManager entityManager,
+                                ObjectMapper objectMapper) {
+        this.patientRepository = patientRepository;
+        this.patientMapper = patientMapper;
+        this.entityManager = entityManager;
+        // the writer is shared across rows, so jackson must neither close nor flush it per value
+        this.jsonWriter = objectMapper.writerFor(PatientResponseDto.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Transactional(readOnly = true)
+    public long exportPatients(ExportFormat format, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+
+        if (format == ExportFormat.CSV) {
+            writer.write("id,name,email,address,dateOfBirth\n");
+        }
+
+        long count = 0;
+        try (Stream<Patient> patients = patientRepository.streamAll()) {
+            Iterator<Patient> iterator = patients.iterator();
+            while (iterator.hasNext()) {
+                Patient patient = iterator.next();
+                PatientResponseDto dto = patientMapper.toPatientResponseDto(patient);
+
+                if (format == ExportFormat.CSV) {
+                    writeCsvRow(writer, dto);
+                } else {
+                    jsonWriter.writeValue(writer, dto);
+                    writer.write('\n');
+                }
+
+                // keep the persistence context empty so heap use does not grow with the table
+                entityManager.detach(patient);
+
+                if (++count % FLUSH_EVERY == 0) {
+                    writer.flush();
+                }
+            }
+        }
+
+        writer.flush();
+        log.info("Exported {} patients as {}", count, format);
+        return count;
+    }
+
+    private void writeCsvRow(Writer writer, PatientResponseDto dto) throws IOException {
+        writer.write(csvField(dto.getId()));
+        writer.write(',');
+        writer.write(csvField(dto.getName()));
+        writer.write(',');
+        writer.write(csvField(dto.getEmail()));
+        writer.write(',');
+        writer.write(csvField(dto.getAddress()));
+        writer.write(',');
+        writer.write(csvField(dto.getDateOfBirth()));
+        writer.write('\n');
+    }
+
+    private static String csvField(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    public enum ExportFormat {
+        NDJSON("ndjson", MediaType.parseMediaType("application/x-ndjson")),
+        CSV("csv", MediaType.parseMediaType("text/csv"));
+
+        private final String extension;
+        private final MediaType mediaType;
+
+        ExportFormat(String extension, MediaType mediaType) {
+            this.extension = extension;
+            this.mediaType = mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public static ExportFormat fromParam(String param) {
+            return Arrays.stream(values())
+                    .filter(format -> format.extension.equalsIgnoreCase(param))
+                    .findFirst()
+                    .orElseThrow(() -> new UnsupportedExportFormatException("Unsupported export format '" + param + "'"));
+        }
+    }
+}
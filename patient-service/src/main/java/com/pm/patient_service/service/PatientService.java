@@ -1,47 +1,199 @@
 package com.pm.patient_service.service;
 
+import billing.BillingRequest;
+import billing.BillingResponse;
+import com.pm.patient_service.cache.PatientCache;
+import com.pm.patient_service.cache.PatientDataVersion;
+import com.pm.patient_service.dto.PatientBatchResponseDto;
+import com.pm.patient_service.dto.PatientBatchResultDto;
+import com.pm.patient_service.dto.PatientPageResponseDto;
 import com.pm.patient_service.dto.PatientRequestDto;
 import com.pm.patient_service.dto.PatientResponseDto;
+import com.pm.patient_service.dto.validators.CreatePatientValidationGroup;
 import com.pm.patient_service.exception.EmailAlreadyExistsException;
+import com.pm.patient_service.exception.InvalidPageRequestException;
 import com.pm.patient_service.exception.PatientNotFoundException;
+import com.pm.patient_service.grpc.BillingAccountRequester;
 import com.pm.patient_service.grpc.BillingServiceGrpcClient;
-import com.pm.patient_service.kafka.KafkaProducer;
+import com.pm.patient_service.index.PatientEmailIndex;
+import com.pm.patient_service.index.PatientSearchIndex;
+import com.pm.patient_service.kafka.PatientEventOutbox;
 import com.pm.patient_service.mapper.PatientMapper;
 import com.pm.patient_service.model.Patient;
+import com.pm.patient_service.pagination.PatientCursor;
+import com.pm.patient_service.pagination.PatientSortField;
 import com.pm.patient_service.repository.PatientRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import jakarta.validation.groups.Default;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class PatientService {
 
     private final  PatientRepository patientRepository;
     private final PatientMapper patientMapper;
     private final BillingServiceGrpcClient billingServiceGrpcClient;
-    private final KafkaProducer kafkaProducer;
+    private final BillingAccountRequester billingAccountRequester;
+    private final PatientEventOutbox patientEventOutbox;
+    private final PatientEmailIndex patientEmailIndex;
+    private final PatientSearchIndex patientSearchIndex;
+    private final PatientCache patientCache;
+    private final PatientDataVersion patientDataVersion;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
 
-    public List<PatientResponseDto> getPatients(){
-        List<Patient> patientList =  patientRepository.findAll();
-        List<PatientResponseDto> patientLitDto = patientList
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int BATCH_CHUNK_SIZE = 500;
+    private static final int MAX_SEARCH_RESULTS = 50;
+
+    /**
+     * ETag for patient list pages, read before the page so a write in between only costs one more full response.
+     */
+    public String currentETag(){
+        return patientDataVersion.etag();
+    }
+
+    public PatientPageResponseDto getPatients(String after, int limit, String sort){
+        PatientSortField sortField = PatientSortField.fromParam(sort);
+        int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+
+        // fetch one extra row to know whether there is a next page without a count query
+        Limit fetchLimit = Limit.of(pageSize + 1);
+        List<Patient> patientList = after == null || after.isBlank()
+                ? findFirstPage(sortField, fetchLimit)
+                : findPageAfter(PatientCursor.decode(after), sortField, fetchLimit);
+
+        boolean hasNext = patientList.size() > pageSize;
+        List<Patient> page = hasNext ? patientList.subList(0, pageSize) : patientList;
+
+        List<PatientResponseDto> patientListDto = page
                 .stream()
                 .map(patient -> patientMapper.toPatientResponseDto(patient))
                 .toList();
 
-        return  patientLitDto;
+        String nextCursor = hasNext
+                ? PatientCursor.after(page.get(page.size() - 1), sortField).encode()
+                : null;
+
+        return PatientPageResponseDto.builder()
+                .patients(patientListDto)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    public PatientResponseDto getPatient(UUID id){
+        return patientCache.getById(id, this::loadPatient)
+                .orElseThrow(()-> new PatientNotFoundException("Patient not found with id"+id));
+    }
+
+    // not filtered through the email index: it only knows this replica's writes, a patient created elsewhere a
+    // moment ago would be reported missing
+    public Optional<PatientResponseDto> findPatientByEmail(String email){
+        return patientCache.getByEmail(email, this::loadPatientByEmail, this::loadPatient);
+    }
+
+    public List<PatientResponseDto> searchPatients(String query, int limit){
+        int resultSize = Math.clamp(limit, 1, MAX_SEARCH_RESULTS);
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+
+        if (!patientSearchIndex.isReady()) {
+            String prefix = query.trim();
+            return patientRepository.findByNameStartingWithIgnoreCaseOrEmailStartingWithIgnoreCase(prefix, prefix, Limit.of(resultSize))
+                    .stream()
+                    .map(patient -> patientMapper.toPatientResponseDto(patient))
+                    .toList();
+        }
+
+        List<UUID> ids = patientSearchIndex.search(query, resultSize);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        // one primary key lookup for the page, then back into rank order
+        Map<UUID, Patient> patients = patientRepository.findAllById(ids)
+                .stream()
+                .collect(Collectors.toMap(Patient::getId, Function.identity()));
+        return ids.stream()
+                .map(patients::get)
+                .filter(Objects::nonNull)
+                .map(patient -> patientMapper.toPatientResponseDto(patient))
+                .toList();
+    }
+
+    private PatientResponseDto loadPatient(UUID id){
+        return patientRepository.findById(id)
+                .map(patient -> patientMapper.toPatientResponseDto(patient))
+                .orElse(null);
+    }
+
+    private PatientResponseDto loadPatientByEmail(String email){
+        return patientRepository.findByEmail(email)
+                .map(patient -> patientMapper.toPatientResponseDto(patient))
+                .orElse(null);
+    }
+
+    private List<Patient> findFirstPage(PatientSortField sortField, Limit limit){
+        return switch (sortField) {
+            case REGISTERED_DATE -> patientRepository.findFirstPageByRegisteredDate(limit);
+            case NAME -> patientRepository.findFirstPageByName(limit);
+        };
+    }
+
+    private List<Patient> findPageAfter(PatientCursor cursor, PatientSortField sortField, Limit limit){
+        if (cursor.sortField() != sortField) {
+            throw new InvalidPageRequestException("Cursor was issued for sort '" + cursor.sortField().getParamName() + "'");
+        }
+
+        return switch (sortField) {
+            case REGISTERED_DATE -> patientRepository.findPageAfterRegisteredDate(parseCursorDate(cursor), cursor.id(), limit);
+            case NAME -> patientRepository.findPageAfterName(cursor.sortValue(), cursor.id(), limit);
+        };
+    }
+
+    private LocalDate parseCursorDate(PatientCursor cursor){
+        try {
+            return LocalDate.parse(cursor.sortValue());
+        } catch (DateTimeParseException e) {
+            throw new InvalidPageRequestException("Malformed cursor");
+        }
     }
 
     public PatientResponseDto createPatient(PatientRequestDto requestDto){
-        Optional<Patient> patient  = patientRepository.findByEmail(requestDto.getEmail());
+        // the index answers definite misses, only possible duplicates cost a query
+        if (patientEmailIndex.mightContain(requestDto.getEmail())) {
+            Optional<Patient> patient  = patientRepository.findByEmail(requestDto.getEmail());
 
-        patient.ifPresent(existingPatient -> {
-            throw new EmailAlreadyExistsException("Patient with email '" + requestDto.getEmail() + "' already exists.");
-        });
+            patient.ifPresent(existingPatient -> {
+                throw new EmailAlreadyExistsException("Patient with email '" + requestDto.getEmail() + "' already exists.");
+            });
+        }
 
         Patient newPatient = Patient.builder()
                 .name(requestDto.getName())
@@ -51,15 +203,192 @@ public class PatientService {
                 .registeredDate(LocalDate.parse(requestDto.getRegisteredDate()))
                 .build();
 
-        patientRepository.save(newPatient);
-
-        billingServiceGrpcClient.createBillingAccount(newPatient.getId().toString(), newPatient.getName(), newPatient.getEmail());
+        // the event is published by OutboxRelay once this commits, Kafka is not on the request path
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                patientRepository.save(newPatient);
+                patientEventOutbox.enqueue(newPatient, PatientEventOutbox.PATIENT_CREATED);
+                patientDataVersion.bump(newPatient.getId());
+            });
+        } catch (DataIntegrityViolationException e) {
+            // created concurrently, or on a replica whose writes this index has not seen
+            patientEmailIndex.add(requestDto.getEmail());
+            throw new EmailAlreadyExistsException("Patient with email '" + requestDto.getEmail() + "' already exists.");
+        }
+        patientEmailIndex.add(newPatient.getEmail());
+        patientSearchIndex.index(newPatient.getId(), newPatient.getName(), newPatient.getEmail());
 
-        kafkaProducer.sendMessage(newPatient);
+        billingAccountRequester.requestBillingAccount(newPatient.getId().toString(), newPatient.getName(), newPatient.getEmail());
 
         return  patientMapper.toPatientResponseDto(newPatient);
     }
 
+    public PatientBatchResponseDto createPatients(List<PatientRequestDto> requestDtos){
+        PatientBatchResultDto[] results = new PatientBatchResultDto[requestDtos.size()];
+        List<PendingPatient> pendingPatients = new ArrayList<>(requestDtos.size());
+        Set<String> batchEmails = new HashSet<>();
+
+        for (int i = 0; i < requestDtos.size(); i++) {
+            PatientRequestDto requestDto = requestDtos.get(i);
+
+            String error = validateForCreate(requestDto);
+            if (error == null && !batchEmails.add(requestDto.getEmail())) {
+                error = "Email address appears more than once in the batch";
+            }
+
+            if (error != null) {
+                results[i] = batchFailure(i, error);
+            } else {
+                pendingPatients.add(new PendingPatient(i, PatientMapper.toModel(requestDto)));
+            }
+        }
+
+        for (int from = 0; from < pendingPatients.size(); from += BATCH_CHUNK_SIZE) {
+            createChunk(pendingPatients.subList(from, Math.min(from + BATCH_CHUNK_SIZE, pendingPatients.size())), results);
+        }
+
+        List<PatientBatchResultDto> resultList = Arrays.asList(results);
+        int created = (int) resultList.stream()
+                .filter(result -> PatientBatchResultDto.CREATED.equals(result.getStatus()))
+                .count();
+
+        log.info("Batch registration finished: {} created, {} failed", created, results.length - created);
+
+        return PatientBatchResponseDto.builder()
+                .created(created)
+                .failed(results.length - created)
+                .results(resultList)
+                .build();
+    }
+
+    private void createChunk(List<PendingPatient> chunk, PatientBatchResultDto[] results){
+        // one IN query per chunk instead of a findByEmail per patient
+        List<String> emails = chunk.stream()
+                .map(pending -> pending.patient().getEmail())
+                .filter(patientEmailIndex::mightContain)
+                .toList();
+        Set<String> existingEmails = emails.isEmpty()
+                ? Set.of()
+                : new HashSet<>(patientRepository.findExistingEmails(emails));
+
+        List<PendingPatient> toInsert = new ArrayList<>(chunk.size());
+        for (PendingPatient pending : chunk) {
+            if (existingEmails.contains(pending.patient().getEmail())) {
+                results[pending.index()] = batchFailure(pending.index(), "Email address already Exists");
+            } else {
+                toInsert.add(pending);
+            }
+        }
+
+        if (toInsert.isEmpty()) {
+            return;
+        }
+
+        List<PendingPatient> saved = insertChunk(toInsert, results);
+        saved.forEach(pending -> {
+            patientEmailIndex.add(pending.patient().getEmail());
+            patientSearchIndex.index(pending.patient().getId(), pending.patient().getName(), pending.patient().getEmail());
+        });
+
+        List<BillingRequest> billingRequests = saved
+                .stream()
+                .map(pending -> BillingServiceGrpcClient.toBillingRequest(
+                        pending.patient().getId().toString(),
+                        pending.patient().getName(),
+                        pending.patient().getEmail()))
+                .toList();
+        List<CompletableFuture<BillingResponse>> billingResponses = billingServiceGrpcClient.createBillingAccounts(billingRequests);
+
+        for (int i = 0; i < saved.size(); i++) {
+            PendingPatient pending = saved.get(i);
+            String message = null;
+            try {
+                billingResponses.get(i).join();
+            } catch (CompletionException e) {
+                log.warn("Billing account creation failed for patient {}: {}", pending.patient().getId(), e.getCause().getMessage());
+                billingAccountRequester.retryLater(billingRequests.get(i));
+                message = "Patient created, billing account creation queued for retry";
+            }
+
+            results[pending.index()] = PatientBatchResultDto.builder()
+                    .index(pending.index())
+                    .status(PatientBatchResultDto.CREATED)
+                    .patient(patientMapper.toPatientResponseDto(pending.patient()))
+                    .message(message)
+                    .build();
+        }
+
+        // the request scoped persistence context would otherwise keep every imported patient managed
+        entityManager.clear();
+    }
+
+    private List<PendingPatient> insertChunk(List<PendingPatient> toInsert, PatientBatchResultDto[] results){
+        try {
+            // jdbc batched through hibernate.jdbc.batch_size
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Patient> patients = toInsert.stream().map(PendingPatient::patient).toList();
+                patientRepository.saveAll(patients);
+                patientEventOutbox.enqueueAll(patients, PatientEventOutbox.PATIENT_CREATED);
+                patientDataVersion.bump(patients.getFirst().getId());
+            });
+            return toInsert;
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent request took one of the emails after our check, fall back to row by row to find it
+            log.warn("Batch insert of {} patients hit a constraint violation, retrying row by row", toInsert.size());
+        }
+
+        List<PendingPatient> saved = new ArrayList<>(toInsert.size());
+        for (PendingPatient pending : toInsert) {
+            pending.patient().setId(null);
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    patientRepository.saveAndFlush(pending.patient());
+                    patientEventOutbox.enqueue(pending.patient(), PatientEventOutbox.PATIENT_CREATED);
+                    patientDataVersion.bump(pending.patient().getId());
+                });
+                saved.add(pending);
+            } catch (DataIntegrityViolationException e) {
+                patientEmailIndex.add(pending.patient().getEmail());
+                results[pending.index()] = batchFailure(pending.index(), "Email address already Exists");
+            }
+        }
+        return saved;
+    }
+
+    private String validateForCreate(PatientRequestDto requestDto){
+        if (requestDto == null) {
+            return "Patient cannot be empty";
+        }
+
+        Set<ConstraintViolation<PatientRequestDto>> violations =
+                validator.validate(requestDto, Default.class, CreatePatientValidationGroup.class);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+
+        try {
+            LocalDate.parse(requestDto.getDateOfBirth());
+            LocalDate.parse(requestDto.getRegisteredDate());
+        } catch (DateTimeParseException e) {
+            return "Dates must be in yyyy-MM-dd format";
+        }
+        return null;
+    }
+
+    private static PatientBatchResultDto batchFailure(int index, String message){
+        return PatientBatchResultDto.builder()
+                .index(index)
+                .status(PatientBatchResultDto.FAILED)
+                .message(message)
+                .build();
+    }
+
+    private record PendingPatient(int index, Patient patient) {
+    }
+
     public PatientResponseDto updatePatient(UUID id, PatientRequestDto requestDto){
 //        Patient existingPatient = patientRepository.findById(id)
 //                .orElseThrow(()-> new PatientNotFoundException("Patient not found with id"+id));
@@ -70,7 +399,8 @@ public class PatientService {
 //            throw new EmailAlreadyExistsException("Patient already exist with email"+requestDto.getEmail());
 //        }
 
-        boolean emailExists = patientRepository.existsByEmailAndIdNot(requestDto.getEmail(), id);
+        boolean emailExists = patientEmailIndex.mightContain(requestDto.getEmail())
+                && patientRepository.existsByEmailAndIdNot(requestDto.getEmail(), id);
         if (emailExists) {
             throw new EmailAlreadyExistsException("Patient already exists with email " + requestDto.getEmail());
         }
@@ -78,18 +408,53 @@ public class PatientService {
 
         Patient existingPatient = patientRepository.findById(id)
                 .orElseThrow(()-> new PatientNotFoundException("Patient not found with id"+id));
+        String previousEmail = existingPatient.getEmail();
 
         existingPatient.setName(requestDto.getName());
         existingPatient.setAddress(requestDto.getAddress());
         existingPatient.setEmail(requestDto.getEmail());
         existingPatient.setDateOfBirth(LocalDate.parse(requestDto.getDateOfBirth()));
-        patientRepository.save(existingPatient);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                lockForUpdate(id);
+                patientRepository.save(existingPatient);
+                patientEventOutbox.enqueue(existingPatient, PatientEventOutbox.PATIENT_UPDATED);
+                patientDataVersion.bump(id);
+            });
+        } catch (DataIntegrityViolationException e) {
+            patientEmailIndex.add(requestDto.getEmail());
+            throw new EmailAlreadyExistsException("Patient already exists with email " + requestDto.getEmail());
+        } finally {
+            patientCache.evict(id);
+        }
+
+        if (!previousEmail.equals(existingPatient.getEmail())) {
+            patientEmailIndex.remove(previousEmail);
+            patientEmailIndex.add(existingPatient.getEmail());
+            patientCache.evictEmail(previousEmail);
+        }
+        patientSearchIndex.index(id, existingPatient.getName(), existingPatient.getEmail());
        return patientMapper.toPatientResponseDto(existingPatient);
     }
 
     public void deletePatient(UUID id){
         Patient existingPatient = patientRepository.findById(id)
                 .orElseThrow(()-> new PatientNotFoundException("Patient not found with id"+id));
-        patientRepository.deleteById(id);
+        transactionTemplate.executeWithoutResult(status -> {
+            lockForUpdate(id);
+            patientRepository.deleteById(id);
+            patientEventOutbox.enqueue(existingPatient, PatientEventOutbox.PATIENT_DELETED);
+            patientDataVersion.bump(id);
+        });
+        patientCache.evict(id);
+        patientCache.evictEmail(existingPatient.getEmail());
+        patientEmailIndex.remove(existingPatient.getEmail());
+        patientSearchIndex.remove(id);
+    }
+
+    // a concurrent write of the same patient on another replica waits here until this one commits
+    private void lockForUpdate(UUID id){
+        patientRepository.findByIdForUpdate(id)
+                .orElseThrow(()-> new PatientNotFoundException("Patient not found with id"+id));
     }
 }
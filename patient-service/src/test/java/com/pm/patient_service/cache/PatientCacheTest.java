@@ -0,0 +1,64 @@
+package com.pm.patient_service.cache;
+
+import com.pm.patient_service.dto.PatientResponseDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PatientCacheTest {
+
+    private final PatientCache cache = new PatientCache(100, Duration.ofMinutes(5), new SimpleMeterRegistry());
+    private final Map<String, PatientResponseDto> database = new HashMap<>();
+    private final List<String> emailLookups = new ArrayList<>();
+
+    @Test
+    void emailLookupsAreCachedAndMatchTheDatabaseCase() {
+        PatientResponseDto john = patient("John.Doe@example.com");
+        database.put(john.getEmail(), john);
+
+        assertEquals(john, getByEmail("John.Doe@example.com").orElseThrow());
+        assertEquals(john, getByEmail("John.Doe@example.com").orElseThrow());
+        assertEquals(List.of("John.Doe@example.com"), emailLookups);
+
+        // the database lookup is exact, so the cache must not answer for another spelling either
+        assertTrue(getByEmail("john.doe@example.com").isEmpty());
+    }
+
+    @Test
+    void evictedEmailIsLookedUpAgain() {
+        PatientResponseDto john = patient("john@example.com");
+        database.put(john.getEmail(), john);
+        getByEmail("john@example.com");
+
+        cache.evictEmail("john@example.com");
+        getByEmail("john@example.com");
+
+        assertEquals(List.of("john@example.com", "john@example.com"), emailLookups);
+    }
+
+    private Optional<PatientResponseDto> getByEmail(String email){
+        return cache.getByEmail(email,
+                key -> {
+                    emailLookups.add(key);
+                    return database.get(key);
+                },
+                id -> database.values().stream().filter(p -> p.getId().equals(id.toString())).findFirst().orElse(null));
+    }
+
+    private static PatientResponseDto patient(String email){
+        return PatientResponseDto.builder()
+                .id(UUID.randomUUID().toString())
+                .email(email)
+                .build();
+    }
+}
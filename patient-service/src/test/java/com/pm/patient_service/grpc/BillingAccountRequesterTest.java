@@ -0,0 +1,72 @@
+package com.pm.patient_service.grpc;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import com.pm.patient_service.exception.BillingUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BillingAccountRequesterTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final BillingServiceGrpcClient client = mock(BillingServiceGrpcClient.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BillingAccountRequester requester = new BillingAccountRequester(client, true, 100, MAX_ATTEMPTS, 100, meterRegistry);
+
+    @Test
+    void openCircuitIsProbedAndShedCallsKeepTheirAttempts() {
+        when(client.getCircuitState()).thenReturn(BillingCircuitBreaker.State.OPEN);
+        when(client.createBillingAccountAsync(any()))
+                .thenReturn(CompletableFuture.failedFuture(new BillingUnavailableException("Billing service circuit is open")));
+        requester.retryLater(request("patient-1"));
+        requester.retryLater(request("patient-2"));
+
+        // far more rounds than attempts: while the breaker is open one probe per round, shed and requeued
+        for (int i = 0; i < MAX_ATTEMPTS * 5; i++) {
+            requester.retryPending();
+        }
+        verify(client, times(MAX_ATTEMPTS * 5)).createBillingAccountAsync(any());
+        assertEquals(2, queueSize());
+        assertEquals(0, meterRegistry.get("billing.retry.dropped").counter().count());
+
+        // the probe got through and closed the breaker, the next round takes everything
+        when(client.getCircuitState()).thenReturn(BillingCircuitBreaker.State.CLOSED);
+        when(client.createBillingAccountAsync(any()))
+                .thenReturn(CompletableFuture.completedFuture(BillingResponse.getDefaultInstance()));
+        requester.retryPending();
+        assertEquals(0, queueSize());
+    }
+
+    @Test
+    void failedCallsUseUpAttempts() {
+        when(client.getCircuitState()).thenReturn(BillingCircuitBreaker.State.CLOSED);
+        when(client.createBillingAccountAsync(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("UNAVAILABLE")));
+        requester.retryLater(request("patient-1"));
+
+        for (int i = 0; i < MAX_ATTEMPTS * 5; i++) {
+            requester.retryPending();
+        }
+        assertEquals(0, queueSize());
+        assertEquals(1, meterRegistry.get("billing.retry.dropped").counter().count());
+    }
+
+    private double queueSize(){
+        return meterRegistry.get("billing.retry.queue.size").gauge().value();
+    }
+
+    private static BillingRequest request(String patientId){
+        return BillingServiceGrpcClient.toBillingRequest(patientId, "Jane Doe", "jane.doe@example.com");
+    }
+}
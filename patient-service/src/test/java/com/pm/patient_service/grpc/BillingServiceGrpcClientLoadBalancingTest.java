@@ -0,0 +1,123 @@
+package com.pm.patient_service.grpc;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import billing.BillingServiceGrpc;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// three billingservice instances on local ports behind one static:// target
+class BillingServiceGrpcClientLoadBalancingTest {
+
+    private static final int INSTANCES = 3;
+    private static final int CALLS = 300;
+
+    private final List<Server> servers = new ArrayList<>();
+    private final List<CountingBillingService> instances = new ArrayList<>();
+
+    @BeforeEach
+    void startInstances() throws IOException {
+        for (int i = 0; i < INSTANCES; i++) {
+            CountingBillingService instance = new CountingBillingService();
+            instances.add(instance);
+            servers.add(ServerBuilder.forPort(0).addService(instance).build().start());
+        }
+    }
+
+    @AfterEach
+    void stopInstances() {
+        servers.forEach(Server::shutdownNow);
+    }
+
+    @Test
+    void roundRobinSpreadsCallsOverEveryInstance() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BillingServiceGrpcClient client = client(meterRegistry);
+        try {
+            for (int i = 0; i < CALLS; i++) {
+                client.createBillingAccount("patient-" + i, "Jane Doe", "jane.doe@example.com");
+            }
+        } finally {
+            client.shutdown();
+        }
+
+        List<Integer> received = instances.stream().map(instance -> instance.calls.get()).toList();
+        assertEquals(CALLS, received.stream().mapToInt(Integer::intValue).sum());
+        // a perfect split is 100 each, the first calls can land before every connection is ready
+        received.forEach(calls -> assertTrue(calls >= CALLS / INSTANCES / 2, "calls per instance: " + received));
+
+        Collection<Timer> perInstance = meterRegistry.find("billing.grpc.client.instance.calls").tag("outcome", "success").timers();
+        assertEquals(INSTANCES, perInstance.size());
+        assertEquals(received.stream().sorted().toList(),
+                perInstance.stream().map(timer -> (int) timer.count()).sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    void shutdownLetsOpenCallsFinish() throws Exception {
+        instances.forEach(instance -> instance.delayMs = 300);
+        BillingServiceGrpcClient client = client(new SimpleMeterRegistry());
+
+        CompletableFuture<BillingResponse> response = client.createBillingAccountAsync(
+                BillingServiceGrpcClient.toBillingRequest("patient-1", "Jane Doe", "jane.doe@example.com"));
+        // let the call reach an instance before shutting down
+        while (instances.stream().mapToInt(instance -> instance.calls.get()).sum() == 0) {
+            Thread.onSpinWait();
+        }
+        client.shutdown();
+
+        // the response callback may still be on its way when the channel reports terminated
+        assertEquals("ACTIVE", response.get(1, TimeUnit.SECONDS).getStatus());
+    }
+
+    private BillingServiceGrpcClient client(MeterRegistry meterRegistry){
+        String target = servers.stream()
+                .map(server -> "localhost:" + server.getPort())
+                .collect(Collectors.joining(",", "static://", ""));
+        return new BillingServiceGrpcClient("localhost", 9002, target, "round_robin",
+                30_000, 10_000, 300_000, 5_000,
+                2_000, 100, 64,
+                // unary calls, one per account, so every call is balanced on its own
+                false, 5, 500, 10_000,
+                5, 10_000, false, meterRegistry);
+    }
+
+    private static class CountingBillingService extends BillingServiceGrpc.BillingServiceImplBase {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile long delayMs;
+
+        @Override
+        public void createBillingAccount(BillingRequest request, StreamObserver<BillingResponse> responseObserver) {
+            calls.incrementAndGet();
+            try {
+                TimeUnit.MILLISECONDS.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            responseObserver.onNext(BillingResponse.newBuilder()
+                    .setAccountId(request.getPatientId())
+                    .setStatus("ACTIVE")
+                    .build());
+            responseObserver.onCompleted();
+        }
+    }
+}
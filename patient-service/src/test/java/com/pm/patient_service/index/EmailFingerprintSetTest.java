@@ -0,0 +1,48 @@
+package com.pm.patient_service.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmailFingerprintSetTest {
+
+    @Test
+    void matchesHashSetUnderRandomAddAndRemove() {
+        EmailFingerprintSet set = new EmailFingerprintSet(16);
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            // small key space so removes and collisions in the probe chains happen a lot
+            long key = PatientEmailIndex.fingerprint("user" + random.nextInt(5_000) + "@test.com");
+            if (random.nextInt(3) == 0) {
+                set.remove(key);
+                expected.remove(key);
+            } else {
+                set.add(key);
+                expected.add(key);
+            }
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (int i = 0; i < 5_000; i++) {
+            long key = PatientEmailIndex.fingerprint("user" + i + "@test.com");
+            assertEquals(expected.contains(key), set.contains(key));
+        }
+    }
+
+    @Test
+    void fingerprintIgnoresCaseAndSurroundingWhitespace() {
+        EmailFingerprintSet set = new EmailFingerprintSet(16);
+        set.add(PatientEmailIndex.fingerprint("Jane.Doe@Example.com"));
+
+        assertTrue(set.contains(PatientEmailIndex.fingerprint(" jane.doe@example.com ")));
+        assertFalse(set.contains(PatientEmailIndex.fingerprint("john.doe@example.com")));
+    }
+}
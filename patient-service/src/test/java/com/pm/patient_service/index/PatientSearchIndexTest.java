@@ -0,0 +1,127 @@
+package com.pm.patient_service.index;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PatientSearchIndexTest {
+
+    private final PatientSearchIndex index = new PatientSearchIndex(0.5, 50_000, new SimpleMeterRegistry());
+
+    private final UUID john = UUID.randomUUID();
+    private final UUID johanna = UUID.randomUUID();
+    private final UUID maria = UUID.randomUUID();
+
+    @Test
+    void prefixesRankFirstAndTyposStillMatch() {
+        index.index(john, "John Doe", "john.doe@example.com");
+        index.index(johanna, "Johanna Smith", "jsmith@example.com");
+        index.index(maria, "María López", "maria.lopez@example.com");
+
+        assertEquals(List.of(johanna, john), index.search("Joha", 10).subList(0, 2));
+        assertEquals(john, index.search("jonh doe", 10).get(0));
+        assertEquals(List.of(maria), index.search("maria lop", 10));
+        assertEquals(List.of(john), index.search("john.doe@exa", 10).subList(0, 1));
+        assertTrue(index.search("zzz", 10).isEmpty());
+    }
+
+    @Test
+    void updatesAndRemovesAreVisibleToSearch() {
+        index.index(john, "John Doe", "john.doe@example.com");
+        index.index(john, "Jonathan Doe", "jonathan@example.com");
+
+        assertEquals(List.of(john), index.search("jonathan", 10));
+        assertEquals(1, index.size());
+
+        index.remove(john);
+        assertTrue(index.search("jonathan", 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void keepsMatchingAfterRebuildingFromTombstones() {
+        for (int i = 0; i < 25_000; i++) {
+            index.index(john, "John Doe " + i, "john" + i + "@example.com");
+        }
+        index.index(maria, "Maria Lopez", "maria@example.com");
+
+        assertEquals(2, index.size());
+        assertEquals(List.of(john), index.search("John Doe 24999", 1));
+        assertFalse(index.search("maria", 10).isEmpty());
+    }
+
+    @Test
+    void warmerDoesNotOverwriteWritesMadeWhileWarming() {
+        // the app updates john and deletes maria while the warmer is still streaming their old rows
+        index.index(john, "Jonathan Doe", "jonathan@example.com");
+        index.remove(maria);
+        index.indexIfUnwritten(john, "John Doe", "john.doe@example.com");
+        index.indexIfUnwritten(maria, "María López", "maria.lopez@example.com");
+        index.indexIfUnwritten(johanna, "Johanna Smith", "jsmith@example.com");
+        index.markReady();
+
+        assertEquals(List.of(john), index.search("jonathan", 10));
+        assertTrue(index.search("maria", 10).isEmpty());
+        assertEquals(List.of(johanna), index.search("johanna", 10));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void shortQueriesWithATypoFallBackToEditDistance() {
+        index.index(john, "John Doe", "jd@example.com");
+        index.index(johanna, "Johanna Smith", "jsmith@example.com");
+        index.index(maria, "Maria Lopez", "maria@example.com");
+
+        // "jhon" shares a single trigram with "john", too few for the trigram match
+        assertEquals(List.of(john), index.search("jhon", 10));
+        assertEquals(List.of(john), index.search("jhon do", 10));
+        assertEquals(List.of(maria), index.search("mraia", 10));
+        assertTrue(index.search("jxyz", 10).isEmpty());
+    }
+
+    @Test
+    void typoMatchesRankBelowTrigramMatches() {
+        UUID jhon = UUID.randomUUID();
+        index.index(john, "John Doe", "jd@example.com");
+        index.index(jhon, "Jhon Smith", "js@example.com");
+
+        assertEquals(List.of(jhon, john), index.search("jhon", 10));
+    }
+
+    @Test
+    void editDistanceCountsSwapsAsOneEdit() {
+        assertTrue(PatientSearchIndex.editDistanceAtMost("jhon", "john", 1));
+        assertTrue(PatientSearchIndex.editDistanceAtMost("jon", "john", 1));
+        assertTrue(PatientSearchIndex.editDistanceAtMost("jonathon", "jonathan", 1));
+        assertFalse(PatientSearchIndex.editDistanceAtMost("jhno", "john", 1));
+        assertTrue(PatientSearchIndex.editDistanceAtMost("jhno", "john", 2));
+        assertFalse(PatientSearchIndex.editDistanceAtMost("maria", "john", 2));
+    }
+
+    @Test
+    void fullPageOfWeakMatchesDoesNotHideABetterOneIndexedLater() {
+        for (int i = 0; i < 500; i++) {
+            index.index(UUID.randomUUID(), "Michelle Nel " + i, "m" + i + "@example.com");
+        }
+        index.index(john, "Michael Nelson", "mnelson@example.com");
+
+        assertEquals(john, index.search("michael nel", 5).getFirst());
+    }
+
+    @Test
+    void scansAtMostMaxCandidatesPerQuery() {
+        PatientSearchIndex capped = new PatientSearchIndex(0.5, 100, new SimpleMeterRegistry());
+        for (int i = 0; i < 1_000; i++) {
+            capped.index(UUID.randomUUID(), "John Doe", "john" + i + "@example.com");
+        }
+
+        // only the first 100 docs are looked at, they all match
+        assertEquals(100, capped.search("john", 1_000).size());
+    }
+}
@@ -0,0 +1,136 @@
+package com.pm.patient_service.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import patient.events.PatientEvent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The producer settings from application.properties against the client defaults the patient topic used before
+ * (no linger, 16KB batches, no compression), sending the way OutboxRelay does: a batch of events, flush, wait for
+ * the acks. Throughput on a shared build machine is too noisy to assert on and is only logged; the assertions are
+ * on what the settings are for, fewer requests and fewer bytes to the broker for the same events.
+ */
+@EmbeddedKafka(partitions = 3, topics = KafkaProducer.PATIENT_TOPIC)
+class KafkaProducerThroughputTest {
+
+    private static final Logger log = LoggerFactory.getLogger(KafkaProducerThroughputTest.class);
+
+    private static final int EVENTS = 50_000;
+    private static final int PATIENTS = 5_000;
+    private static final int RELAY_BATCH_SIZE = 200;
+
+    @Test
+    void configuredProducerSendsFewerRequestsAndBytes(EmbeddedKafkaBroker broker) throws IOException {
+        List<String> patientIds = new ArrayList<>(PATIENTS);
+        List<byte[]> payloads = new ArrayList<>(PATIENTS);
+        for (int i = 0; i < PATIENTS; i++) {
+            String patientId = UUID.randomUUID().toString();
+            patientIds.add(patientId);
+            payloads.add(PatientEvent.newBuilder()
+                    .setPatientId(patientId)
+                    .setName("Patient " + i)
+                    .setEmail("patient." + i + "@example.com")
+                    .setEventType(PatientEventOutbox.PATIENT_UPDATED)
+                    .build()
+                    .toByteArray());
+        }
+
+        Run defaults = publish("defaults", broker, Map.of(), patientIds, payloads);
+        Run configured = publish("configured", broker, applicationProducerProperties(), patientIds, payloads);
+
+        // a relay batch is at most one request either way, the events in it are what compresses
+        assertTrue(configured.requests() <= defaults.requests(), () -> defaults + " vs " + configured);
+        assertTrue(configured.bytes() < defaults.bytes() * 0.7, () -> defaults + " vs " + configured);
+    }
+
+    private Run publish(String name, EmbeddedKafkaBroker broker, Map<String, Object> producerProperties,
+                        List<String> patientIds, List<byte[]> payloads){
+        Map<String, Object> config = new HashMap<>(producerProperties);
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        DefaultKafkaProducerFactory<String, byte[]> producerFactory = new DefaultKafkaProducerFactory<>(config);
+        try {
+            KafkaTemplate<String, byte[]> kafkaTemplate = new KafkaTemplate<>(producerFactory);
+            MeterRegistry meterRegistry = new SimpleMeterRegistry();
+            KafkaProducer producer = new KafkaProducer(kafkaTemplate, meterRegistry);
+            // metadata and connections, outside the measurement
+            producer.send("warm-up", payloads.get(0)).join();
+            double requestsBefore = metric(kafkaTemplate, "request-total");
+            double bytesBefore = metric(kafkaTemplate, "outgoing-byte-total");
+
+            long start = System.nanoTime();
+            for (int sent = 0; sent < EVENTS; sent += RELAY_BATCH_SIZE) {
+                List<CompletableFuture<?>> sends = new ArrayList<>(RELAY_BATCH_SIZE);
+                for (int i = sent; i < sent + RELAY_BATCH_SIZE; i++) {
+                    sends.add(producer.send(patientIds.get(i % PATIENTS), payloads.get(i % PATIENTS)));
+                }
+                producer.flush();
+                CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+            }
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(EVENTS + 1, meterRegistry.get("patient.events.send").tag("outcome", "acked").timer().count());
+            Run run = new Run(metric(kafkaTemplate, "request-total") - requestsBefore,
+                    metric(kafkaTemplate, "outgoing-byte-total") - bytesBefore,
+                    metric(kafkaTemplate, "batch-size-avg"), metric(kafkaTemplate, "compression-rate-avg"));
+            log.info("{}: {} events in {} ms ({} events/s), {}", name, EVENTS, elapsedMs,
+                    EVENTS * 1000L / Math.max(elapsedMs, 1), run);
+            return run;
+        } finally {
+            producerFactory.destroy();
+        }
+    }
+
+    // spring.kafka.producer.* as the application binds it
+    private static Map<String, Object> applicationProducerProperties() throws IOException {
+        KafkaProperties kafkaProperties = new Binder(new MapConfigurationPropertySource(
+                PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"))))
+                .bind("spring.kafka", KafkaProperties.class)
+                .get();
+        Map<String, Object> producerProperties = kafkaProperties.buildProducerProperties(null);
+        producerProperties.remove(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG);
+        return producerProperties;
+    }
+
+    private static double metric(KafkaTemplate<String, byte[]> kafkaTemplate, String name){
+        for (Map.Entry<MetricName, ? extends Metric> metric : kafkaTemplate.metrics().entrySet()) {
+            if (metric.getKey().name().equals(name) && metric.getKey().group().equals("producer-metrics")) {
+                return ((Number) metric.getValue().metricValue()).doubleValue();
+            }
+        }
+        throw new IllegalStateException("No producer metric " + name);
+    }
+
+    private record Run(double requests, double bytes, double batchSizeAvg, double compressionRateAvg) {
+    }
+}
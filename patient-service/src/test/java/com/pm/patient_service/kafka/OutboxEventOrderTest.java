@@ -0,0 +1,84 @@
+package com.pm.patient_service.kafka;
+
+import com.pm.patient_service.model.OutboxEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Two replicas, each with its own id allocator, writing events of the same patient to one database:
+ * the relay reads them back by id and must see them in the order they were written.
+ */
+class OutboxEventOrderTest {
+
+    private final String url = "jdbc:h2:mem:outbox-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+    private final LocalContainerEntityManagerFactoryBean replicaA = entityManagerFactory();
+    private final LocalContainerEntityManagerFactoryBean replicaB = entityManagerFactory();
+
+    @AfterEach
+    void close() {
+        replicaA.destroy();
+        replicaB.destroy();
+    }
+
+    @Test
+    void eventsOfAPatientWrittenOnTwoReplicasKeepTheirOrder() {
+        // replica A has been running for a while, its allocator already handed out a few ids
+        for (int i = 0; i < 3; i++) {
+            write(replicaA.getObject(), "patient-" + i, "PATIENT_CREATED");
+        }
+
+        write(replicaB.getObject(), "patient", "PATIENT_CREATED");
+        write(replicaA.getObject(), "patient", "PATIENT_UPDATED");
+
+        EntityManager entityManager = replicaA.getObject().createEntityManager();
+        try {
+            List<String> eventTypes = entityManager.createQuery(
+                            "select e.eventType from OutboxEvent e where e.aggregateId = 'patient' order by e.id asc", String.class)
+                    .getResultList();
+            assertEquals(List.of("PATIENT_CREATED", "PATIENT_UPDATED"), eventTypes);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static void write(EntityManagerFactory replica, String patientId, String eventType) {
+        EntityManager entityManager = replica.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            entityManager.persist(OutboxEvent.builder()
+                    .aggregateId(patientId)
+                    .eventType(eventType)
+                    .payload(new byte[0])
+                    .createdAt(Instant.now())
+                    .build());
+            entityManager.getTransaction().commit();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private LocalContainerEntityManagerFactoryBean entityManagerFactory() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, "sa", "");
+        dataSource.setDriverClassName("org.h2.Driver");
+
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan("com.pm.patient_service.model");
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(Map.of("hibernate.hbm2ddl.auto", "update"));
+        factory.afterPropertiesSet();
+        return factory;
+    }
+}
@@ -0,0 +1,147 @@
+package com.pm.patient_service.kafka;
+
+import com.pm.patient_service.model.OutboxDeadLetter;
+import com.pm.patient_service.model.OutboxEvent;
+import com.pm.patient_service.repository.OutboxDeadLetterRepository;
+import com.pm.patient_service.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.NotLeaderOrFollowerException;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    private final OutboxEventRepository repository = mock(OutboxEventRepository.class);
+    private final OutboxDeadLetterRepository deadLetterRepository = mock(OutboxDeadLetterRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final KafkaProducer kafkaProducer = mock(KafkaProducer.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final List<String> sent = new ArrayList<>();
+
+    @Test
+    void failedEventHoldsBackTheLaterEventsOfItsPatientOnly() {
+        OutboxEvent a1 = event(1, "a");
+        OutboxEvent b1 = event(2, "b");
+        OutboxEvent a2 = event(3, "a");
+        OutboxEvent b2 = event(4, "b");
+        givenBatch(a1, b1, a2, b2);
+        when(kafkaProducer.send(eq("a"), any())).thenAnswer(invocation -> record(invocation.getArgument(0), false));
+        when(kafkaProducer.send(eq("b"), any())).thenAnswer(invocation -> record(invocation.getArgument(0), true));
+
+        relay().relay();
+
+        // a2 is never sent after a1 failed, b2 only after b1 was acked
+        assertEquals(List.of("a", "b", "b"), sent);
+        verify(repository).deleteAllInBatch(List.of(b1, b2));
+        assertEquals(1, a1.getAttempts());
+        assertEquals(0, a2.getAttempts());
+    }
+
+    @Test
+    void refusedSendEndsTheBatch() {
+        OutboxEvent a = event(1, "a");
+        OutboxEvent b = event(2, "b");
+        givenBatch(a, b);
+        when(kafkaProducer.send(eq("a"), any())).thenThrow(new TimeoutException("metadata not available"));
+
+        relay().relay();
+
+        verify(kafkaProducer, times(1)).send(eq("a"), any());
+        verify(kafkaProducer, never()).send(eq("b"), any());
+        verify(repository).deleteAllInBatch(List.of());
+        assertEquals(1, a.getAttempts());
+        assertEquals(0, b.getAttempts());
+    }
+
+    @Test
+    void eventRejectedMaxAttemptsTimesIsDeadLetteredAndNoLongerHoldsBackItsPatient() {
+        OutboxEvent a1 = event(1, "a");
+        a1.setAttempts(2);
+        OutboxEvent a2 = event(2, "a");
+        givenBatch(a1, a2);
+        when(kafkaProducer.send(eq("a"), any()))
+                .thenAnswer(invocation -> failed(invocation.getArgument(0), new RecordTooLargeException("too large")))
+                .thenAnswer(invocation -> record(invocation.getArgument(0), true));
+
+        relay().relay();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<OutboxDeadLetter>> deadLetters = ArgumentCaptor.forClass(List.class);
+        verify(deadLetterRepository).saveAll(deadLetters.capture());
+        OutboxDeadLetter deadLetter = deadLetters.getValue().getFirst();
+        assertEquals(1L, deadLetter.getId());
+        assertEquals(3, deadLetter.getAttempts());
+        assertEquals(List.of("a", "a"), sent);
+        verify(repository).deleteAllInBatch(List.of(a2, a1));
+        assertEquals(1.0, meterRegistry.counter("patient.outbox.dead_lettered").count());
+    }
+
+    @Test
+    void retriableFailuresAreNeverDeadLettered() {
+        OutboxEvent a1 = event(1, "a");
+        a1.setAttempts(10);
+        OutboxEvent a2 = event(2, "a");
+        givenBatch(a1, a2);
+        when(kafkaProducer.send(eq("a"), any()))
+                .thenAnswer(invocation -> failed(invocation.getArgument(0), new NotLeaderOrFollowerException("moving")));
+
+        relay().relay();
+
+        verify(deadLetterRepository, never()).saveAll(anyList());
+        verify(repository).deleteAllInBatch(List.of());
+        assertEquals(List.of("a"), sent);
+        assertEquals(11, a1.getAttempts());
+    }
+
+    private OutboxRelay relay(){
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        return new OutboxRelay(repository, deadLetterRepository, kafkaProducer, transactionTemplate, 200, 1_000, 3, meterRegistry);
+    }
+
+    private void givenBatch(OutboxEvent... events){
+        when(repository.findNextBatchForUpdate(any())).thenReturn(List.of(events));
+    }
+
+    private CompletableFuture<SendResult<String, byte[]>> record(String patientId, boolean acked){
+        sent.add(patientId);
+        return acked
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.failedFuture(new IllegalStateException("not acked"));
+    }
+
+    private CompletableFuture<SendResult<String, byte[]>> failed(String patientId, Exception error){
+        sent.add(patientId);
+        return CompletableFuture.failedFuture(error);
+    }
+
+    private static OutboxEvent event(long id, String patientId){
+        return OutboxEvent.builder()
+                .id(id)
+                .aggregateId(patientId)
+                .eventType("PATIENT_UPDATED")
+                .payload(new byte[0])
+                .createdAt(Instant.now())
+                .build();
+    }
+}